@@ -0,0 +1,64 @@
+package leon.task.timeindb.benchmark;
+
+import leon.task.timeindb.service.BatchResult;
+import leon.task.timeindb.service.BatchWriterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Запись батча во встроенную H2: построчный JPA против многострочного JDBC
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchWriterBenchmark {
+
+    @Param({"jpa", "jdbc"})
+    public String mode;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext ctx;
+    private BatchWriterService writer;
+    private long nextSecond = 1_000_000_000L; // Каждый батч пишет новые секунды, таблица растёт
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start("app.writer.mode=" + mode);
+        writer = ctx.getBean(BatchWriterService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    // Только новые метки: в режиме jpa дубль помечает транзакцию rollback-only, и весь батч откатывается
+    @Benchmark
+    public BatchResult insertBatch() {
+        List<Instant> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(Instant.ofEpochSecond(nextSecond++));
+        }
+        return writer.insertBatch(batch);
+    }
+}
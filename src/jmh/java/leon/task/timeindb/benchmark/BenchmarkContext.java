@@ -0,0 +1,36 @@
+package leon.task.timeindb.benchmark;
+
+import leon.task.timeindb.TimeInDbApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Запуск контекста приложения на встроенной H2 для бенчмарков (по отдельной БД на каждый запуск)
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        List<String> props = new ArrayList<>(List.of(
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+                "spring.datasource.driverClassName=org.h2.Driver",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "app.time-zone=UTC",
+                "logging.level.root=WARN",
+                "logging.level.leon.task.timeindb=ERROR",
+                "logging.level.leon.task.timeindb.service.BatchWriterService=ERROR")); // Отладочный лог каждого батча исказил бы замеры
+        props.addAll(List.of(extraProperties));
+        // Свойства передаются как аргументы командной строки — они приоритетнее application.yaml
+        return new SpringApplicationBuilder(TimeInDbApplication.class)
+                .web(WebApplicationType.NONE) // HTTP-сервер не нужен — контроллер вызывается напрямую
+                .run(props.stream().map(p -> "--" + p).toArray(String[]::new));
+    }
+}
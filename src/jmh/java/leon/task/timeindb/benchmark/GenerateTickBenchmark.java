@@ -0,0 +1,83 @@
+package leon.task.timeindb.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import leon.task.timeindb.buffer.BufferType;
+import leon.task.timeindb.buffer.DequeTickBuffer;
+import leon.task.timeindb.buffer.RingTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.service.AdaptiveFlushController;
+import leon.task.timeindb.service.BacklogReplayService;
+import leon.task.timeindb.service.DbCircuitBreaker;
+import leon.task.timeindb.service.TimeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+// Горячий путь приёма меток: generateTick под конкуренцией с фоновой выборкой батчей
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class GenerateTickBenchmark {
+
+    private static final int BATCH = 500; // Размер батча, как во flushIfPossible
+
+    @Param({"RING", "DEQUE"})
+    public BufferType bufferType;
+
+    @Param({"100000"})
+    public int capacity;
+
+    private TickBuffer buffer;
+    private TimeService service;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        buffer = bufferType == BufferType.DEQUE
+                ? new DequeTickBuffer(new LinkedBlockingDeque<>(capacity))
+                : new RingTickBuffer(capacity);
+        // БД в generateTick не участвует — проверка соединения и писатель не нужны
+        TickJournal journal = TickJournal.disabled();
+        TickMetrics metrics = new TickMetrics(new SimpleMeterRegistry(), buffer, journal);
+        service = new TimeService(new DbCircuitBreaker(null), null, buffer, journal, metrics,
+                new AdaptiveFlushController(), new BacklogReplayService(null, metrics));
+    }
+
+    // Три производителя вызывают generateTick, один поток забирает батчи, как фоновая запись
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(3)
+    public void generateTick() {
+        service.generateTick();
+    }
+
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(1)
+    public int drainer(DrainState state) {
+        return buffer.drainTo(state.batch, BATCH);
+    }
+
+    @State(Scope.Thread)
+    public static class DrainState {
+        final long[] batch = new long[BATCH];
+    }
+}
@@ -0,0 +1,64 @@
+package leon.task.timeindb.benchmark;
+
+import leon.task.timeindb.buffer.BufferType;
+import leon.task.timeindb.buffer.DequeTickBuffer;
+import leon.task.timeindb.buffer.RingTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+// Выборка батча с переводом в Instant (как drainUpTo) и возврат в голову (как rollbackBatchToBuffer)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TickBufferBenchmark {
+
+    private static final int BATCH = 500; // Размер батча, как во flushIfPossible
+
+    @Param({"RING", "DEQUE"})
+    public BufferType bufferType;
+
+    private TickBuffer buffer;
+    private final long[] batch = new long[BATCH];
+
+    @Setup(Level.Trial)
+    public void fill() {
+        buffer = bufferType == BufferType.DEQUE
+                ? new DequeTickBuffer(new LinkedBlockingDeque<>(BATCH * 4))
+                : new RingTickBuffer(BATCH * 4);
+        for (int i = 0; i < BATCH * 2; i++) {
+            buffer.offer(1_700_000_000L + i);
+        }
+    }
+
+    // Батч забирается и сразу возвращается — состояние буфера между вызовами не меняется
+    @Benchmark
+    public List<Instant> drainAndRollback() {
+        int n = buffer.drainTo(batch, BATCH);
+        List<Instant> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(Instant.ofEpochSecond(batch[i]));
+        }
+        buffer.pushFront(batch, n);
+        return list;
+    }
+}
@@ -0,0 +1,80 @@
+package leon.task.timeindb.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import leon.task.timeindb.controller.TimeController;
+import leon.task.timeindb.service.BatchWriterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Чтение и сериализация /ticks: одна большая страница против потоковой выгрузки, в каждом формате
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TickExportBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"application/json", "application/x-ndjson", "application/octet-stream"})
+    public String accept; // Формат страницы и потоковой выгрузки
+
+    private ConfigurableApplicationContext ctx;
+    private TimeController controller;
+    private ObjectMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start("app.writer.mode=jdbc", "app.ticks.max-limit=" + rows);
+        controller = ctx.getBean(TimeController.class);
+        mapper = ctx.getBean(ObjectMapper.class);
+
+        BatchWriterService writer = ctx.getBean(BatchWriterService.class);
+        List<Instant> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(Instant.ofEpochSecond(1_600_000_000L + i));
+            if (batch.size() == 10_000) {
+                writer.insertBatch(batch);
+                batch.clear();
+            }
+        }
+        writer.insertBatch(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    // Страница в формате accept: JSON — список строк через Jackson, как в ответе MVC; прочие форматы контроллер кодирует сам
+    @Benchmark
+    public byte[] page() throws Exception {
+        Object body = controller.ticks(null, null, null, null, rows, null, accept, null).getBody();
+        return body instanceof byte[] ? (byte[]) body : mapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public void stream() throws Exception {
+        controller.stream(null, null, null, accept).getBody().writeTo(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,70 @@
+package leon.task.timeindb.loadtest;
+
+import leon.task.timeindb.service.TicksInsertedEvent;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Сквозная задержка метки: от подачи в TimeService.recordTick до коммита батча с ней.
+ * Метки стенда — подряд идущие синтетические секунды от base, поэтому время подачи хранится
+ * в массиве по номеру метки, без отображений и упаковки.
+ */
+public class CommitProbe {
+
+    private volatile long base = Long.MIN_VALUE; // Первая синтетическая секунда; до start() события игнорируются
+    private long[] submittedAt = new long[0];    // System.nanoTime() подачи по номеру метки
+    private long[] latencyNanos = new long[0];   // Задержка по номеру метки; 0 — ещё не записана
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong lastCommitNanos = new AtomicLong();
+
+    void start(long base, int capacity) {
+        submittedAt = new long[capacity];
+        latencyNanos = new long[capacity];
+        this.base = base; // volatile-запись публикует массивы потокам записи
+    }
+
+    void submitted(int index, long nanos) {
+        submittedAt[index] = nanos;
+    }
+
+    @TransactionalEventListener
+    public void onInserted(TicksInsertedEvent event) {
+        long b = base;
+        if (b == Long.MIN_VALUE) return;
+        long now = System.nanoTime();
+        int n = 0;
+        for (Instant ts : event.getTicks()) {
+            long index = ts.getEpochSecond() - b;
+            if (index < 0 || index >= submittedAt.length) continue; // Не метка стенда
+            latencyNanos[(int) index] = Math.max(1, now - submittedAt[(int) index]);
+            n++;
+        }
+        if (n > 0) {
+            committed.addAndGet(n);
+            lastCommitNanos.set(now);
+        }
+    }
+
+    long committed() {
+        return committed.get();
+    }
+
+    long lastCommitNanos() {
+        return lastCommitNanos.get();
+    }
+
+    // Отсортированные задержки записанных меток из первых submitted
+    long[] sortedLatencies(int submitted) {
+        long[] result = new long[submitted];
+        int n = 0;
+        for (int i = 0; i < submitted; i++) {
+            if (latencyNanos[i] != 0) result[n++] = latencyNanos[i];
+        }
+        result = Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+}
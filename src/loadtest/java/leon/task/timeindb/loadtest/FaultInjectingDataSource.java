@@ -0,0 +1,114 @@
+package leon.task.timeindb.loadtest;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Обёртка над пулом соединений, вносящая сбои БД:
+ * - задержка latencyMs перед каждым выполнением запроса (execute*, executeQuery, executeBatch);
+ * - отказ в соединении с вероятностью refuseRate (SQLState 08001, как у недоступного сервера);
+ * - отключение: пока down, getConnection отказывает, а запросы на уже выданных соединениях падают (08006).
+ * Параметры меняются на ходу из другого потока (LoadDriver ведёт по ним сценарий).
+ */
+public class FaultInjectingDataSource extends DelegatingDataSource {
+
+    private volatile long latencyMs;
+    private volatile double refuseRate;
+    private volatile boolean down;
+
+    public FaultInjectingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void setRefuseRate(double refuseRate) {
+        this.refuseRate = refuseRate;
+    }
+
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkConnect();
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        checkConnect();
+        return wrap(super.getConnection(username, password));
+    }
+
+    private void checkConnect() throws SQLException {
+        if (down) {
+            throw new SQLTransientConnectionException("Нагрузочный стенд: БД отключена", "08001");
+        }
+        double rate = refuseRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            throw new SQLTransientConnectionException("Нагрузочный стенд: соединение отклонено", "08001");
+        }
+    }
+
+    // Перед каждым запросом — задержка и проверка отключения
+    private void beforeExecute() throws SQLException {
+        if (down) {
+            throw new SQLTransientConnectionException("Нагрузочный стенд: соединение с БД потеряно", "08006");
+        }
+        long ms = latencyMs;
+        if (ms > 0) LockSupport.parkNanos(ms * 1_000_000);
+    }
+
+    private Connection wrap(Connection con) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new Handler(con, false));
+    }
+
+    // Connection: создаваемые им Statement/PreparedStatement/CallableStatement тоже оборачиваются;
+    // Statement: перед execute* — задержка и проверка отключения. Остальные вызовы (в т.ч. unwrap) — как есть
+    private final class Handler implements InvocationHandler {
+        private final Object target;
+        private final boolean statement;
+
+        Handler(Object target, boolean statement) {
+            this.target = target;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (statement && name.startsWith("execute")) {
+                beforeExecute();
+            } else if (!statement && name.equals("isValid") && down) {
+                return false;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (!statement && result instanceof Statement) {
+                Class<?> type = method.getReturnType(); // Statement, PreparedStatement или CallableStatement
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, new Handler(result, true));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package leon.task.timeindb.loadtest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.service.TimeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Сценарий нагрузочного прогона.
+ *
+ * Генератор подаёт метки в TimeService.recordTick с частотой load.rate вместо планировщика раз в секунду:
+ * метки — подряд идущие синтетические секунды (время стенда идёт в rate раз быстрее), поэтому не совпадают
+ * ни между собой, ни с реальными метками. Фоновая запись, переподключение и дозапись работают как в приложении.
+ * Задержка отсчитывается от запланированного момента подачи, а не от фактического: отставание генератора
+ * тоже попадает в замер (без coordinated omission).
+ *
+ * Сбои БД вносит FaultInjectingDataSource: постоянная задержка запросов, доля отказов в соединении
+ * и одно отключение длительностью load.outage-length, начиная с load.outage-at от старта.
+ */
+public class LoadDriver {
+
+    static final long BASE_SECOND = 4_102_444_800L; // 2100-01-01T00:00:00Z — заведомо позже реальных меток
+    private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10); // Период замера очереди
+
+    @Autowired private TimeService timeService;
+    @Autowired private TickBuffer buffer;
+    @Autowired private TickJournal journal;
+    @Autowired private CommitProbe probe;
+    @Autowired private DataSource dataSource;
+    @Autowired private MeterRegistry registry;
+
+    @Value("${load.rate:5000}")
+    private int rate = 5000;                 // Меток в секунду
+    @Value("${load.duration:60s}")
+    private Duration duration = Duration.ofSeconds(60); // Длительность подачи
+    @Value("${load.latency-ms:0}")
+    private long latencyMs;                  // Задержка каждого запроса к БД
+    @Value("${load.refuse-rate:0}")
+    private double refuseRate;               // Доля отказов в соединении
+    @Value("${load.outage-at:20s}")
+    private Duration outageAt = Duration.ofSeconds(20); // Начало отключения от старта
+    @Value("${load.outage-length:0s}")
+    private Duration outageLength = Duration.ZERO;      // Длительность отключения (0 — без него)
+    @Value("${load.drain-timeout:60s}")
+    private Duration drainTimeout = Duration.ofSeconds(60); // Ожидание дозаписи после останова
+
+    // Состояние сценария для потока замеров
+    private volatile long outageStart = Long.MAX_VALUE;
+    private volatile long outageEnd = Long.MAX_VALUE;
+    private volatile boolean sampling = true;
+    private long highWater;
+    private long steadyLevel;  // Максимум очереди до отключения
+    private long reconnectAt = -1;
+    private long recoveredAt = -1;
+
+    public LoadReport run() throws InterruptedException, SQLException {
+        FaultInjectingDataSource faults = dataSource.unwrap(FaultInjectingDataSource.class);
+        int total = (int) Math.min(Integer.MAX_VALUE - 8, rate * duration.toSeconds());
+        probe.start(BASE_SECOND, total);
+        faults.setLatencyMs(latencyMs);
+        faults.setRefuseRate(refuseRate);
+        Counter dropped = registry.counter("ticks.dropped");
+        double droppedBefore = dropped.count();
+
+        Thread sampler = new Thread(this::sample, "load-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long outageFrom = outageLength.isZero() ? Long.MAX_VALUE : outageAt.toNanos();
+        long outageTo = outageFrom == Long.MAX_VALUE ? Long.MAX_VALUE : outageFrom + outageLength.toNanos();
+        double nanosPerTick = 1e9 / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + (long) (i * nanosPerTick);
+            waitUntil(due);
+            long elapsed = due - start;
+            if (elapsed >= outageFrom && outageStart == Long.MAX_VALUE) {
+                faults.setDown(true);
+                outageStart = System.nanoTime();
+            }
+            if (elapsed >= outageTo && outageEnd == Long.MAX_VALUE) {
+                faults.setDown(false);
+                outageEnd = System.nanoTime();
+            }
+            probe.submitted(i, due);
+            timeService.recordTick(BASE_SECOND + i);
+        }
+        long stopped = System.nanoTime();
+        if (outageStart != Long.MAX_VALUE && outageEnd == Long.MAX_VALUE) { // Отключение дольше прогона
+            faults.setDown(false);
+            outageEnd = stopped;
+        }
+
+        // Дозапись остатка: до пустой очереди и записи всех невытесненных меток
+        long deadline = stopped + drainTimeout.toNanos();
+        long drainedAt = -1;
+        while (System.nanoTime() < deadline) {
+            long lost = (long) (dropped.count() - droppedBefore);
+            if (backlog() == 0 && probe.committed() + lost >= total) {
+                drainedAt = System.nanoTime();
+                break;
+            }
+            Thread.sleep(10);
+        }
+        sampling = false;
+        sampler.join();
+
+        LoadReport report = new LoadReport();
+        report.submitted = total;
+        report.committed = probe.committed();
+        report.dropped = (long) (dropped.count() - droppedBefore);
+        report.lost = total - report.committed;
+        report.achievedRate = total / ((stopped - start) / 1e9);
+        report.highWaterMark = highWater;
+        report.bufferCapacity = buffer.capacity();
+        report.latencies = probe.sortedLatencies(total);
+        if (outageStart != Long.MAX_VALUE) {
+            report.outageMs = TimeUnit.NANOSECONDS.toMillis(outageEnd - outageStart);
+            report.reconnectMs = reconnectAt < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(reconnectAt - outageEnd);
+            report.recoveryMs = recoveredAt < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(recoveredAt - outageEnd);
+        }
+        report.drainMs = drainedAt < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(drainedAt - stopped);
+        return report;
+    }
+
+    // Замер очереди раз в SAMPLE_NANOS: пик, уровень до отключения, первый коммит и возврат очереди после него
+    private void sample() {
+        long committedAtEnd = -1;
+        while (sampling) {
+            long now = System.nanoTime();
+            long backlog = backlog();
+            highWater = Math.max(highWater, backlog);
+            if (now < outageStart) {
+                steadyLevel = Math.max(steadyLevel, backlog);
+            } else if (now >= outageEnd) {
+                if (committedAtEnd < 0) committedAtEnd = probe.committed();
+                if (reconnectAt < 0 && probe.committed() > committedAtEnd) reconnectAt = probe.lastCommitNanos();
+                if (reconnectAt >= 0 && recoveredAt < 0 && backlog <= steadyLevel) recoveredAt = now;
+            }
+            LockSupport.parkNanos(SAMPLE_NANOS);
+        }
+    }
+
+    private long backlog() {
+        return buffer.size() + journal.pending();
+    }
+
+    // Ожидание момента подачи: сон, пока до него больше миллисекунды, затем короткое активное ожидание
+    private static void waitUntil(long due) {
+        long left;
+        while ((left = due - System.nanoTime()) > 0) {
+            if (left > 1_000_000) {
+                LockSupport.parkNanos(left - 500_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
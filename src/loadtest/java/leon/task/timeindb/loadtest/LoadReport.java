@@ -0,0 +1,50 @@
+package leon.task.timeindb.loadtest;
+
+import java.util.Locale;
+
+// Итоги прогона; время — в миллисекундах, -1 — событие не наступило (или в сценарии не было отключения)
+public final class LoadReport {
+
+    long submitted;           // Подано меток генератором
+    long committed;           // Из них записано в БД (по событиям после коммита)
+    long dropped;             // Вытеснено из переполненного буфера (ticks.dropped)
+    long lost;                // Не записано к концу прогона (вытесненные и не дописанные за время ожидания)
+    double achievedRate;      // Фактическая частота подачи, меток/с
+    long highWaterMark;       // Максимум меток в буфере и журнале
+    int bufferCapacity;
+    long[] latencies = new long[0]; // Отсортированные задержки до коммита, нс
+    long outageMs = -1;       // Длительность отключения по сценарию
+    long reconnectMs = -1;    // От конца отключения до первого коммита
+    long recoveryMs = -1;     // От конца отключения до возврата очереди к уровню перед отключением
+    long drainMs = -1;        // От остановки генератора до пустой очереди
+
+    double percentileMs(double p) {
+        if (latencies.length == 0) return Double.NaN;
+        int i = (int) Math.ceil(p / 100 * latencies.length) - 1; // Метод ближайшего ранга
+        return latencies[Math.max(0, Math.min(i, latencies.length - 1))] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Подано меток:           %d (%.0f/с)%n", submitted, achievedRate));
+        sb.append(String.format(Locale.ROOT, "Записано:               %d%n", committed));
+        sb.append(String.format(Locale.ROOT, "Вытеснено (dropped):    %d%n", dropped));
+        sb.append(String.format(Locale.ROOT, "Не записано всего:      %d%n", lost));
+        sb.append(String.format(Locale.ROOT, "Пик очереди:            %d (ёмкость буфера %d, %.0f%%)%n",
+                highWaterMark, bufferCapacity, 100.0 * highWaterMark / bufferCapacity));
+        sb.append(String.format(Locale.ROOT, "Задержка до коммита, мс: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentileMs(50), percentileMs(90), percentileMs(99), percentileMs(99.9), percentileMs(100)));
+        if (outageMs >= 0) {
+            sb.append(String.format(Locale.ROOT, "Отключение БД:          %d мс%n", outageMs));
+            sb.append(String.format(Locale.ROOT, "Первый коммит после:    %s%n", ms(reconnectMs)));
+            sb.append(String.format(Locale.ROOT, "Возврат очереди:        %s%n", ms(recoveryMs)));
+        }
+        sb.append(String.format(Locale.ROOT, "Дозапись после останова: %s", ms(drainMs)));
+        return sb.toString();
+    }
+
+    private static String ms(long value) {
+        return value < 0 ? "не наступил" : value + " мс";
+    }
+}
@@ -0,0 +1,36 @@
+package leon.task.timeindb.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// Бины стенда: обёртка пула с внесением сбоев и замер задержки до коммита
+@Configuration(proxyBeanMethods = false)
+public class LoadTestConfig {
+
+    // Пул (Hikari) создаётся как обычно; JPA, JdbcTemplate и COPY получают его через обёртку
+    @Bean
+    public static BeanPostProcessor faultInjectingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof FaultInjectingDataSource)) {
+                    return new FaultInjectingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public CommitProbe commitProbe() {
+        return new CommitProbe();
+    }
+
+    @Bean
+    public LoadDriver loadDriver() {
+        return new LoadDriver();
+    }
+}
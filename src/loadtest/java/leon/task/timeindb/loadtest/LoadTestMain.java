@@ -0,0 +1,62 @@
+package leon.task.timeindb.loadtest;
+
+import leon.task.timeindb.TimeInDbApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * Нагрузочный прогон конвейера меток с внесением сбоев БД: gradle loadTest --args='...'.
+ *
+ * Аргументы — свойства Spring в виде --ключ=значение: параметры сценария load.* (см. LoadDriver)
+ * и любые настройки приложения, которые нужно проверить, например:
+ *   --load.rate=5000 --load.duration=60s --load.outage-at=20s --load.outage-length=15s --load.latency-ms=2
+ *   --app.buffer-capacity=100000 --app.flush.max-batch=20000 --app.journal.enabled=true
+ * По умолчанию — встроенная H2; для локального PostgreSQL передайте spring.datasource.url/username/password.
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("spring.datasource.url", "jdbc:h2:mem:load-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        props.put("app.generator.enabled", "false"); // Метки подаёт LoadDriver
+        props.put("app.time-zone", "UTC");
+        props.put("app.rollup.backfill-on-start", "false");
+        props.put("logging.level.root", "WARN");
+        props.put("logging.level.leon.task.timeindb", "INFO");
+        props.put("logging.level.leon.task.timeindb.service.TimeService", "ERROR"); // Предупреждение на каждую вытесненную метку
+        props.put("logging.level.leon.task.timeindb.service.BatchWriterService", "INFO");
+        props.put("logging.level.com.zaxxer.hikari", "ERROR");
+        props.put("logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper", "OFF"); // Каждый сбой сценария
+        // Аргументы запуска перекрывают значения по умолчанию (повтор ключа в командной строке склеил бы значения)
+        List<String> argv = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.startsWith("--") ? arg.substring(2).split("=", 2)[0] : null;
+            if (key != null) props.remove(key);
+            argv.add(arg);
+        }
+        props.forEach((k, v) -> argv.add("--" + k + "=" + v));
+
+        LoadReport report;
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(TimeInDbApplication.class, LoadTestConfig.class)
+                .web(WebApplicationType.NONE)
+                .run(argv.toArray(new String[0]))) {
+            report = ctx.getBean(LoadDriver.class).run();
+        }
+        System.out.println();
+        System.out.println(report);
+        System.exit(0); // Пул планировщика из SchedulingConfig не бин и не останавливается вместе с контекстом
+    }
+}
@@ -0,0 +1,7 @@
+package leon.task.timeindb.buffer;
+
+// Реализация буфера меток (свойство app.buffer-type)
+public enum BufferType {
+    RING,  // Кольцевой буфер long[] — 8 байт на метку, без аллокаций
+    DEQUE  // Исходный LinkedBlockingDeque<Instant> — узел + Instant на каждую метку
+}
@@ -0,0 +1,70 @@
+package leon.task.timeindb.buffer;
+
+import java.time.Instant;
+import java.util.concurrent.LinkedBlockingDeque;
+
+// Исходный буфер на LinkedBlockingDeque<Instant>, оставлен как выбираемая реализация (app.buffer-type=deque)
+public final class DequeTickBuffer implements TickBuffer {
+
+    private final LinkedBlockingDeque<Instant> deque;
+
+    public DequeTickBuffer(LinkedBlockingDeque<Instant> deque) {
+        this.deque = deque;
+    }
+
+    @Override
+    public boolean offer(long epochSecond) {
+        return deque.offer(Instant.ofEpochSecond(epochSecond));
+    }
+
+    @Override
+    public int offerAll(long[] src, int len) {
+        int added = 0;
+        while (added < len && deque.offer(Instant.ofEpochSecond(src[added]))) {
+            added++;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean offerEvictingOldest(long epochSecond) {
+        Instant ts = Instant.ofEpochSecond(epochSecond);
+        boolean evicted = false;
+        // Вытеснение и добавление — две отдельные операции, между ними может вклиниться другой поток
+        while (!deque.offer(ts)) {
+            deque.pollFirst(); // Если очередь полна - удаляем самую старую метку из начала
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    @Override
+    public int drainTo(long[] dst, int max) {
+        int n = 0;
+        int limit = Math.min(max, dst.length);
+        Instant ts;
+        while (n < limit && (ts = deque.pollFirst()) != null) {
+            dst[n++] = ts.getEpochSecond();
+        }
+        return n;
+    }
+
+    @Override
+    public int pushFront(long[] src, int len) {
+        int restored = 0;
+        for (int i = len - 1; i >= 0; i--) { // Обратный обход для сохранения исходного порядка
+            if (deque.offerFirst(Instant.ofEpochSecond(src[i]))) restored++;
+        }
+        return restored;
+    }
+
+    @Override
+    public int size() {
+        return deque.size();
+    }
+
+    @Override
+    public int capacity() {
+        return deque.size() + deque.remainingCapacity();
+    }
+}
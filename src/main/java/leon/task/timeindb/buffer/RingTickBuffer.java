@@ -0,0 +1,121 @@
+package leon.task.timeindb.buffer;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Кольцевой буфер epoch-секунд на одном массиве long[]: не создаёт объектов на метку,
+// поэтому ёмкость в десятки миллионов меток стоит 8 байт на метку
+public final class RingTickBuffer implements TickBuffer {
+
+    private final long[] ring;  // Хранилище меток
+    private final ReentrantLock lock = new ReentrantLock(); // Все изменения head/size — под одной блокировкой
+    private int head;           // Индекс самой старой метки
+    private volatile int size;  // Количество меток (volatile — для чтения size() без блокировки)
+
+    public RingTickBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.ring = new long[capacity];
+    }
+
+    @Override
+    public boolean offer(long epochSecond) {
+        lock.lock();
+        try {
+            if (size == ring.length) return false; // Буфер полон
+            ring[index(head + size)] = epochSecond;
+            size++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int offerAll(long[] src, int len) {
+        lock.lock();
+        try {
+            int k = Math.min(len, ring.length - size); // Сколько поместится
+            if (k == 0) return 0;
+            int tail = index(head + size);
+            int first = Math.min(k, ring.length - tail); // Часть до конца массива
+            System.arraycopy(src, 0, ring, tail, first);
+            if (first < k) {
+                System.arraycopy(src, first, ring, 0, k - first); // Продолжение с начала массива
+            }
+            size += k;
+            return k;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offerEvictingOldest(long epochSecond) {
+        lock.lock();
+        try {
+            if (size == ring.length) {
+                // Вытеснение и добавление под одной блокировкой — никто не вклинится между ними
+                ring[head] = epochSecond;  // Новая метка занимает место самой старой (это и есть хвост полного кольца)
+                head = index(head + 1);
+                return true;
+            }
+            ring[index(head + size)] = epochSecond;
+            size++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(long[] dst, int max) {
+        lock.lock();
+        try {
+            int n = Math.min(Math.min(max, dst.length), size);
+            if (n == 0) return 0;
+            int first = Math.min(n, ring.length - head); // Часть до конца массива
+            System.arraycopy(ring, head, dst, 0, first);
+            if (first < n) {
+                System.arraycopy(ring, 0, dst, first, n - first); // Продолжение с начала массива
+            }
+            head = index(head + n);
+            size -= n;
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int pushFront(long[] src, int len) {
+        lock.lock();
+        try {
+            int k = Math.min(len, ring.length - size); // Сколько поместится
+            // Заполнение от конца src к началу: в голове окажется src[len - k], порядок сохраняется
+            for (int i = len - 1; i >= len - k; i--) {
+                head = index(head - 1);
+                ring[head] = src[i];
+            }
+            size += k;
+            return k;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return ring.length;
+    }
+
+    // Приведение индекса к диапазону [0, capacity) без деления (аргумент в пределах (-capacity, 2 * capacity))
+    private int index(int i) {
+        if (i >= ring.length) return i - ring.length;
+        if (i < 0) return i + ring.length;
+        return i;
+    }
+}
@@ -0,0 +1,33 @@
+package leon.task.timeindb.buffer;
+
+import leon.task.timeindb.ingest.TickReader;
+
+// Метка источника в одном long: source в старших битах, секунда со сдвигом от TickReader.MIN_SECOND — в младших 39.
+// Так метки разных источников хранятся в тех же кольцевых long[] буферах, а сортировка упакованных значений
+// упорядочивает их по (source, created_at) — в порядке уникального ключа таблицы
+public final class SourceTick {
+
+    private static final int SECOND_BITS = 39; // 0001..9999 годы — около 3.2e11 секунд
+    private static final long SECOND_MASK = (1L << SECOND_BITS) - 1;
+
+    public static final int MAX_SOURCE = (1 << (63 - SECOND_BITS)) - 1; // Упакованное значение остаётся положительным
+
+    private SourceTick() {
+    }
+
+    public static long pack(int source, long epochSecond) {
+        return (long) source << SECOND_BITS | (epochSecond - TickReader.MIN_SECOND);
+    }
+
+    public static int source(long packed) {
+        return (int) (packed >>> SECOND_BITS);
+    }
+
+    public static long second(long packed) {
+        return (packed & SECOND_MASK) + TickReader.MIN_SECOND;
+    }
+
+    public static boolean isValidSource(int source) {
+        return source >= 0 && source <= MAX_SOURCE;
+    }
+}
@@ -0,0 +1,41 @@
+package leon.task.timeindb.buffer;
+
+// Буфер меток источников, разбитый на полосы (stripes): у каждой полосы свой кольцевой буфер и своя блокировка.
+// Источник всегда попадает в одну полосу по хешу, поэтому приём разных источников не конкурирует за один замок,
+// метки одного источника не расходятся по параллельным транзакциям, а каждую полосу забирает свой поток записи.
+// Значения — упакованные SourceTick
+public final class StripedTickBuffer {
+
+    private final RingTickBuffer[] stripes;
+
+    public StripedTickBuffer(int stripes, int stripeCapacity) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        this.stripes = new RingTickBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new RingTickBuffer(stripeCapacity);
+        }
+    }
+
+    public int stripes() {
+        return stripes.length;
+    }
+
+    public TickBuffer stripe(int index) {
+        return stripes[index];
+    }
+
+    // Полоса источника: перемешивание битов, чтобы подряд идущие номера источников не собирались в соседних полосах
+    public TickBuffer stripeOf(int source) {
+        return stripes[Math.floorMod(source * 0x9E3779B9, stripes.length)];
+    }
+
+    public int size() {
+        int size = 0;
+        for (RingTickBuffer stripe : stripes) size += stripe.size();
+        return size;
+    }
+
+    public int capacity() {
+        return stripes.length * stripes[0].capacity();
+    }
+}
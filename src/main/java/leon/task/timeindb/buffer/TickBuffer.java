@@ -0,0 +1,33 @@
+package leon.task.timeindb.buffer;
+
+// Ограниченный буфер меток, ожидающих записи в БД. Метка хранится как epoch-секунда (long)
+public interface TickBuffer {
+
+    // Добавление в хвост без вытеснения; false, если буфер полон
+    boolean offer(long epochSecond);
+
+    // Добавление src[0..len) в хвост без вытеснения; возвращает, сколько первых элементов поместилось
+    int offerAll(long[] src, int len);
+
+    // Добавление в хвост; при переполнении атомарно вытесняет самую старую метку. true — если что-то вытеснено
+    boolean offerEvictingOldest(long epochSecond);
+
+    // Извлечение до max самых старых меток в dst[0..n); возвращает n
+    int drainTo(long[] dst, int max);
+
+    // Возврат src[0..len) в голову буфера с сохранением порядка; возвращает, сколько поместилось.
+    // Если места не хватает, сохраняются самые новые элементы src (как при offerFirst с конца)
+    int pushFront(long[] src, int len);
+
+    int size();
+
+    int capacity();
+
+    default int remainingCapacity() {
+        return capacity() - size();
+    }
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,179 @@
+package leon.task.timeindb.cache;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Кэш последних закоммиченных меток (epoch seconds) для чтения без обращения к БД.
+ *
+ * Хранит отсортированный хвост таблицы: все метки БД, начиная с coveredFrom, есть в кэше.
+ * Запрос, нижняя граница которого не раньше coveredFrom, обслуживается целиком из памяти;
+ * более старые диапазоны идут в БД. Вытеснение — самых старых меток сверх capacity или старше maxAgeSeconds,
+ * при этом coveredFrom сдвигается за вытесненную метку. Вытеснение идёт и до загрузки: если БД недоступна при старте,
+ * кэш не растёт сверх capacity, пока TickQueryService повторяет загрузку.
+ *
+ * version меняется при каждом изменении данных (в том числе при вставке старых меток, которых нет в кэше),
+ * поэтому пара (запуск, version) годится как ETag для любых ответов /ticks.
+ */
+public class RecentTicksCache {
+
+    private final int capacity;
+    private final long maxAgeSeconds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] data;          // Метки по возрастанию в [head, tail)
+    private int head, tail;
+    private long coveredFrom = Long.MAX_VALUE; // До загрузки кэш ничего не гарантирует
+    private long evictedTo = Long.MIN_VALUE;   // Все метки ранее этой секунды могли быть вытеснены
+    private boolean loaded;
+    private volatile long version;
+
+    public RecentTicksCache(int capacity, long maxAgeSeconds) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        this.capacity = capacity;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.data = new long[capacity * 2]; // Запас под сдвиг head: сжатие массива раз в capacity вытеснений
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tail - head;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Начальная загрузка: newest — самые новые метки таблицы (в любом порядке), complete — в таблице больше ничего нет.
+     * Метки, пришедшие через add() до загрузки, сохраняются.
+     */
+    public void load(long[] newest, int n, boolean complete, long nowSecond) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < n; i++) insert(newest[i]);
+            long oldest = n == 0 ? Long.MAX_VALUE : Arrays.stream(newest, 0, n).min().getAsLong();
+            coveredFrom = Math.max(complete ? Long.MIN_VALUE : oldest, evictedTo); // Вытесненное до загрузки не покрыто
+            loaded = true;
+            evict(nowSecond);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Метки закоммиченного батча; старее coveredFrom не сохраняются (их отдаёт БД)
+    public void add(long[] seconds, int n, long nowSecond) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < n; i++) {
+                if (!loaded || seconds[i] >= coveredFrom) insert(seconds[i]);
+            }
+            evict(nowSecond);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Метки раньше beforeSecond удалены из БД по сроку хранения: убираются и из кэша, ETag меняется
+    public void removeBefore(long beforeSecond) {
+        lock.writeLock().lock();
+        try {
+            head = lowerBound(beforeSecond);
+            if (tail == head) head = tail = 0;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Метки из [fromSecond, toSecond) по возрастанию, не больше limit.
+     * null — диапазон начинается раньше coveredFrom, и ответ нужно брать из БД.
+     */
+    public long[] range(long fromSecond, long toSecond, int limit) {
+        lock.readLock().lock();
+        try {
+            if (!loaded || fromSecond < coveredFrom) return null;
+            int from = lowerBound(fromSecond);
+            int to = lowerBound(toSecond);
+            return Arrays.copyOfRange(data, from, Math.max(from, Math.min(to, from + limit)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Самая новая метка; пусто — кэш не загружен или пуст, ответ нужно брать из БД
+    public OptionalLong latest() {
+        lock.readLock().lock();
+        try {
+            return loaded && tail > head ? OptionalLong.of(data[tail - 1]) : OptionalLong.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Вставка с сохранением порядка; новые метки почти всегда дописываются в конец
+    private void insert(long second) {
+        if (tail > head && second <= data[tail - 1]) {
+            int at = lowerBound(second);
+            if (at < tail && data[at] == second) return; // Уже есть
+            ensureRoom();
+            at = lowerBound(second);
+            System.arraycopy(data, at, data, at + 1, tail - at);
+            data[at] = second;
+            tail++;
+            return;
+        }
+        ensureRoom();
+        data[tail++] = second;
+    }
+
+    private void ensureRoom() {
+        if (tail < data.length) return;
+        int size = tail - head;
+        if (head == 0) {
+            data = Arrays.copyOf(data, data.length * 2); // Батч больше запаса: временно сверх capacity до evict()
+            return;
+        }
+        System.arraycopy(data, head, data, 0, size);
+        head = 0;
+        tail = size;
+    }
+
+    // Вытеснение по размеру и возрасту: coveredFrom сдвигается за последнюю вытесненную метку
+    private void evict(long nowSecond) {
+        long minAllowed = maxAgeSeconds > 0 ? nowSecond - maxAgeSeconds : Long.MIN_VALUE;
+        while (tail > head && (tail - head > capacity || data[head] < minAllowed)) {
+            evictedTo = Math.max(evictedTo, data[head] + 1);
+            head++;
+        }
+        if (loaded) coveredFrom = Math.max(coveredFrom, evictedTo);
+        if (tail == head) head = tail = 0;
+    }
+
+    // Первый индекс в [head, tail) со значением >= value
+    private int lowerBound(long value) {
+        int i = Arrays.binarySearch(data, head, tail, value); // Повторов в кэше нет
+        return i < 0 ? -i - 1 : i;
+    }
+}
@@ -1,18 +1,59 @@
 package leon.task.timeindb.config;
 
+import leon.task.timeindb.buffer.BufferType;
+import leon.task.timeindb.buffer.DequeTickBuffer;
+import leon.task.timeindb.buffer.RingTickBuffer;
+import leon.task.timeindb.buffer.StripedTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Instant;
 import java.util.concurrent.LinkedBlockingDeque;
 
 @Configuration
 public class BufferConfig {
 
     @Bean
-    public LinkedBlockingDeque<Instant> ticksBuffer(
-            @Value("${app.buffer-capacity:100000}") int capacity) {  // Внедрение значения из настроек, по умолчанию 100000
-        return new LinkedBlockingDeque<>(capacity);  // Создание очереди с указанной ёмкостью и возврат как бин
+    public TickBuffer ticksBuffer(
+            @Value("${app.buffer-capacity:100000}") int capacity,  // Внедрение значения из настроек, по умолчанию 100000
+            @Value("${app.buffer-type:ring}") BufferType type) {   // Реализация буфера, по умолчанию кольцевой long[]
+        if (type == BufferType.DEQUE) {
+            return new DequeTickBuffer(new LinkedBlockingDeque<>(capacity));  // Исходная очередь с указанной ёмкостью
+        }
+        return new RingTickBuffer(capacity);  // Кольцевой буфер epoch-секунд указанной ёмкости
+    }
+
+    // Буфер меток других источников (POST /ticks?source=N): полоса на каждый поток записи SourceWriterService
+    @Bean
+    public StripedTickBuffer sourceTicksBuffer(
+            @Value("${app.sources.stripes:0}") int stripes,  // 0 — по числу ядер в пределах бюджета пула соединений
+            @Value("${app.sources.stripe-capacity:100000}") int stripeCapacity,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${app.replay.threads:3}") int replayThreads) {
+        return new StripedTickBuffer(sourceStripes(stripes, Runtime.getRuntime().availableProcessors(), poolSize,
+                replayThreads), stripeCapacity);
+    }
+
+    /*
+     * Число полос (потоков записи источников). После восстановления БД одновременно разбирают очереди
+     * потоки источников, потоки дозаписи (app.replay.threads) и фоновая запись источника по умолчанию;
+     * если их больше, чем соединений пула, ожидание соединения (connection-timeout) считается ошибкой записи
+     * и снова открывает DbCircuitBreaker посреди восстановления. Поэтому полосы получают то, что остаётся от пула
+     * после дозаписи и одного соединения фоновой записи, а явное значение сверх бюджета отклоняется при старте.
+     */
+    static int sourceStripes(int configured, int cores, int poolSize, int replayThreads) {
+        int replay = Math.max(0, replayThreads);
+        int budget = poolSize - replay - 1;
+        if (budget < 1) {
+            throw new IllegalStateException("spring.datasource.hikari.maximum-pool-size=" + poolSize + " мало: нужно"
+                    + " не меньше app.replay.threads + 2 = " + (replay + 2) + " (дозапись, фоновая запись, запись источников)");
+        }
+        if (configured <= 0) return Math.min(cores, budget);
+        if (configured > budget) {
+            throw new IllegalStateException("app.sources.stripes=" + configured + " больше бюджета пула: не больше "
+                    + budget + " = maximum-pool-size " + poolSize + " - app.replay.threads " + replay + " - 1");
+        }
+        return configured;
     }
 }
@@ -0,0 +1,17 @@
+package leon.task.timeindb.config;
+
+import leon.task.timeindb.cache.RecentTicksCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public RecentTicksCache recentTicksCache(
+            @Value("${app.cache.capacity:10000}") int capacity,            // Сколько последних меток держать в памяти
+            @Value("${app.cache.max-age-seconds:3600}") long maxAgeSeconds) { // Метки старше — вытесняются (0 — без ограничения)
+        return new RecentTicksCache(capacity, maxAgeSeconds);
+    }
+}
@@ -0,0 +1,20 @@
+package leon.task.timeindb.config;
+
+import leon.task.timeindb.journal.TickJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close") // Файл закрывается после TimeService, который сбрасывает в него остаток буфера
+    public TickJournal tickJournal(
+            @Value("${app.journal.enabled:false}") boolean enabled,              // Журнал на диске выключен по умолчанию
+            @Value("${app.journal.path:data/ticks.journal}") Path path) throws IOException { // Путь к файлу журнала
+        return enabled ? TickJournal.open(path) : TickJournal.disabled();
+    }
+}
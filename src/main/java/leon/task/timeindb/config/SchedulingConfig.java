@@ -1,5 +1,6 @@
 package leon.task.timeindb.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -9,6 +10,7 @@ import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
 @Configuration
 @EnableScheduling  // Включает поддержку планировщика задач (scheduler)
+@ConditionalOnProperty(name = "spring.task.scheduling.enabled", matchIfMissing = true) // false — @Scheduled-задачи не запускаются (тесты)
 public class SchedulingConfig implements SchedulingConfigurer {  // Реализует интерфейс для кастомной настройки задач
     @Override
     public void configureTasks(ScheduledTaskRegistrar registrar) {
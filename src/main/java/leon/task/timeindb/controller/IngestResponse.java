@@ -0,0 +1,12 @@
+package leon.task.timeindb.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+// Ответ POST /ticks: сколько первых меток тела принято; при 429 или 400 повторять нужно с позиции accepted
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestResponse {
+    long accepted;  // Принято меток (первые accepted значений тела)
+    String error;   // Причина отказа для 400, иначе не выводится
+}
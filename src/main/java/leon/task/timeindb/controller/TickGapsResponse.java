@@ -0,0 +1,15 @@
+package leon.task.timeindb.controller;
+
+import lombok.Value;
+
+import java.util.List;
+
+// Ответ /ticks/gaps: интервалы без меток [start, end) в микросекундах от эпохи
+@Value
+public class TickGapsResponse {
+    long from;            // Начало проверенного диапазона, мкс
+    long to;              // Конец проверенного диапазона (не включительно), мкс
+    long missingSeconds;  // Секунд без метки во всём диапазоне
+    boolean truncated;    // Пропусков больше, чем app.gaps.max-intervals, — в списке только первые
+    List<long[]> gaps;    // Пары [start, end)
+}
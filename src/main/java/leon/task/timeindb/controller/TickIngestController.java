@@ -0,0 +1,97 @@
+package leon.task.timeindb.controller;
+
+import leon.task.timeindb.buffer.SourceTick;
+import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.ingest.BinaryTickReader;
+import leon.task.timeindb.ingest.NdjsonTickReader;
+import leon.task.timeindb.ingest.TickReader;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.service.SourceWriterService;
+import leon.task.timeindb.service.TimeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Массовый приём меток от внешних источников: POST /ticks.
+ * Тело читается потоком порциями по CHUNK меток и сразу уходит в буфер (или журнал), поэтому память
+ * не зависит от размера запроса. Если свободного места в буфере меньше app.ingest.min-free,
+ * приём прекращается с 429 и Retry-After; в ответе — сколько первых меток уже принято.
+ * Параметр source (по умолчанию 0) задаёт источник: метки источника 0 идут в основной буфер,
+ * остальные — в полосу источника в SourceWriterService (свободное место проверяется по этой полосе).
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class TickIngestController {
+
+    public static final String NDJSON = "application/x-ndjson";
+    private static final int CHUNK = 4096; // Меток за одно обращение к буферу
+
+    private final TimeService timeService;
+    private final SourceWriterService sources;
+    private final TickMetrics metrics;
+
+    @Value("${app.ingest.min-free:0.1}")
+    private double minFree = 0.1;        // Доля буфера, которая должна оставаться свободной для генератора меток
+    @Value("${app.ingest.retry-after-seconds:1}")
+    private long retryAfterSeconds = 1;  // Значение Retry-After для 429
+
+    // По одной метке на строку: epoch seconds или строка ISO-8601 в кавычках
+    @PostMapping(value = "/ticks", consumes = NDJSON)
+    public ResponseEntity<IngestResponse> ingestNdjson(InputStream body,
+            @RequestParam(defaultValue = "0") int source) throws IOException {
+        return ingest(new NdjsonTickReader(body), source);
+    }
+
+    // Подряд идущие int64 big-endian epoch seconds
+    @PostMapping(value = "/ticks", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<IngestResponse> ingestBinary(InputStream body,
+            @RequestParam(defaultValue = "0") int source) throws IOException {
+        return ingest(new BinaryTickReader(body), source);
+    }
+
+    private ResponseEntity<IngestResponse> ingest(TickReader reader, int source) throws IOException {
+        if (!SourceTick.isValidSource(source)) {
+            return ResponseEntity.badRequest().body(new IngestResponse(0, "source вне диапазона 0.." + SourceTick.MAX_SOURCE));
+        }
+        boolean defaultSource = source == TimeEntity.DEFAULT_SOURCE;
+        long[] chunk = new long[CHUNK];
+        long accepted = 0;
+        try {
+            int n;
+            while ((n = reader.read(chunk, CHUNK)) > 0) {
+                int taken;
+                if (defaultSource) {
+                    taken = timeService.acceptsIngest(minFree) ? timeService.ingest(chunk, n) : 0;
+                } else {
+                    taken = sources.accepts(source, minFree) ? sources.ingest(source, chunk, n) : 0;
+                }
+                accepted += taken;
+                if (taken < n) {
+                    metrics.ingested(accepted, true);
+                    log.debug("POST /ticks: буфер заполнен, принято {}", accepted);
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                            .body(new IngestResponse(accepted, null));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Метки до ошибочной строки уже в буфере — клиент повторяет начиная с accepted
+            metrics.ingested(accepted, false);
+            return ResponseEntity.badRequest().body(new IngestResponse(accepted, e.getMessage()));
+        }
+        metrics.ingested(accepted, false);
+        return ResponseEntity.ok(new IngestResponse(accepted, null));
+    }
+}
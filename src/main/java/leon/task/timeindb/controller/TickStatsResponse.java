@@ -0,0 +1,22 @@
+package leon.task.timeindb.controller;
+
+import lombok.Value;
+
+import java.util.List;
+
+// Ответ /ticks/stats: непустые интервалы и покрытие диапазона (доля секунд, за которые есть метка)
+@Value
+public class TickStatsResponse {
+    String granularity;
+    String from;          // Начало первого интервала диапазона (включительно)
+    String to;            // Конец последнего интервала диапазона (не включительно)
+    long total;           // Меток в диапазоне
+    double coverage;      // total / число секунд диапазона
+    List<Bucket> buckets; // Пустые интервалы не возвращаются
+
+    @Value
+    public static class Bucket {
+        String start;
+        long count;
+    }
+}
@@ -1,34 +1,257 @@
 package leon.task.timeindb.controller;
 
-import leon.task.timeindb.repository.TimeRepository;
+import leon.task.timeindb.export.TickEncoder;
+import leon.task.timeindb.export.TickFormat;
+import leon.task.timeindb.export.ZonedTickFormatter;
+import leon.task.timeindb.service.Granularity;
+import leon.task.timeindb.service.TickIndexService;
+import leon.task.timeindb.service.TickQueryService;
+import leon.task.timeindb.service.TickRollupService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor  // Аннотация Lombok - генерирует конструктор с обязательными полями (final)
 public class TimeController {
-    private final TimeRepository repo;
+
+    // Заголовок с курсором для следующей keyset-страницы (передаётся обратно в параметре after)
+    public static final String NEXT_AFTER_HEADER = "X-Next-After";
+    private static final long MICROS_PER_SECOND = 1_000_000; // Пропуски /ticks/gaps отдаются в микросекундах
+
+    private final TickQueryService queries;
+    private final TickRollupService rollup;
+    private final TickIndexService index;
 
     // Загрузка значения из конфигурации с дефолтным значением "UTC"
     @Value("${app.time-zone:UTC}")
     private ZoneId appZone;
 
+    // Размер страницы по умолчанию и верхний предел параметра limit
+    @Value("${app.ticks.default-limit:1000}")
+    private int defaultLimit;
+    @Value("${app.ticks.max-limit:10000}")
+    private int maxLimit;
+
+    // Предел числа интервалов в одном ответе /ticks/stats
+    @Value("${app.rollup.max-buckets:10000}")
+    private int maxBuckets;
+
+    // Предел числа интервалов в одном ответе /ticks/gaps
+    @Value("${app.gaps.max-intervals:10000}")
+    private int maxGaps;
+
+    // Индекс полноты видит только коммиты этого экземпляра: при нескольких экземплярах пропуски были бы ложными
+    @Value("${app.single-writer:true}")
+    private boolean singleWriter = true;
+
+    /*
+     * Страница меток. Для опроса новых данных — since (метки строго после него); свежие диапазоны отдаются
+     * из кэша последних меток. ETag меняется с каждым коммитом: при совпадении If-None-Match — 304 без чтения данных.
+     * Формат ответа выбирается по Accept (см. TickFormat), zone — зона строкового представления.
+     */
     @GetMapping("/ticks")
-    public ResponseEntity<List<String>> ticks() {
-        // Получение всех записей из БД, преобразование в stream
-        var body = repo.findAll().stream()
-                // Преобразование каждой сущности: конвертация Instant в ZonedDateTime, для отображения пользователю с учетом его региона
-                .map(e -> ZonedDateTime.ofInstant(e.getCreatedAt(), appZone).toString())
-                // Сбор результатов в List
-                .collect(Collectors.toList());
-        // Возврат HTTP 200 OK с телом в виде списка строк
-        return ResponseEntity.ok(body);
+    public ResponseEntity<?> ticks(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,  // Нижняя граница (включительно)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,    // Верхняя граница (не включительно)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant after, // Keyset-курсор (строго после)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since, // Опрос: метки строго после since
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) ZoneId zone, // Зона строк; для NDJSON и CSV без неё — epoch seconds
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        TickFormat format = TickFormat.negotiate(accept);
+        String etag = etag(queries.etag(), format, zone);
+        if (notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        int pageSize = Math.max(1, Math.min(limit == null ? defaultLimit : limit, maxLimit)); // Ограничение размера страницы
+        // Получение одной страницы (из кэша или БД) вместо всей таблицы
+        List<Instant> page = queries.page(lower(from), upper(to), after != null ? after : since, pageSize);
+
+        ResponseEntity.BodyBuilder response = withEtag(ResponseEntity.ok(), etag).varyBy(HttpHeaders.ACCEPT);
+        if (page.size() == pageSize) {
+            // Страница заполнена целиком — возможно, есть продолжение; отдаём курсор последней метки
+            response.header(NEXT_AFTER_HEADER, page.get(page.size() - 1).toString());
+        }
+        if (format == TickFormat.JSON) {
+            // Прежний ответ — список строк ZonedDateTime через Jackson; правила зоны ищутся один раз на страницу
+            ZonedTickFormatter formatter = formatter(zone);
+            List<String> body = new ArrayList<>(page.size());
+            for (Instant ts : page) {
+                body.add(formatter.format(ts));
+            }
+            return response.body(body);
+        }
+        // Страница ограничена app.ticks.max-limit — кодируется в память целиком
+        ByteArrayOutputStream out = new ByteArrayOutputStream(page.size() * 12);
+        TickEncoder encoder = TickEncoder.open(format, out, zone == null ? null : formatter(zone));
+        for (Instant ts : page) {
+            encoder.write(ts);
+        }
+        encoder.finish();
+        return response.contentType(format.mediaType()).body(out.toByteArray());
+    }
+
+    // Самая новая метка: список из одного элемента (пустой, если меток нет), с тем же ETag, что и /ticks
+    @GetMapping("/ticks/latest")
+    public ResponseEntity<List<String>> latest(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = queries.etag();
+        if (notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        Instant latest = queries.latest();
+        return withEtag(ResponseEntity.ok(), etag).body(latest == null ? List.of() : List.of(format(latest)));
+    }
+
+    // Полная выгрузка диапазона потоком: документ пишется по мере чтения курсора, память постоянна.
+    // Формат — по Accept, как у /ticks; для суточных выгрузок компактнее всего BINARY или NDJSON без зоны
+    @GetMapping("/ticks/stream")
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) ZoneId zone,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Instant lower = lower(from);
+        Instant upper = upper(to);
+        TickFormat format = TickFormat.negotiate(accept);
+        ZonedTickFormatter formatter = format == TickFormat.JSON || zone != null ? formatter(zone) : null;
+        StreamingResponseBody body = out -> {
+            TickEncoder encoder = TickEncoder.open(format, out, formatter);
+            queries.stream(lower, upper, encoder::write);
+            encoder.finish();
+        };
+        return ResponseEntity.ok().contentType(format.mediaType()).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    // Количество меток по интервалам из таблицы tick_rollup; по умолчанию — последние сутки по часам
+    @GetMapping("/ticks/stats")
+    public TickStatsResponse stats(
+            @RequestParam(defaultValue = "hour") String granularity, // minute, hour или day (интервалы в UTC)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Granularity g;
+        try {
+            g = Granularity.parse(granularity);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity: ожидается minute, hour или day");
+        }
+        Instant upper = to == null ? Instant.now() : to;
+        Instant lower = from == null ? upper.minus(Duration.ofDays(1)) : from;
+        // Диапазон расширяется до целых интервалов
+        long start = g.floor(lower.getEpochSecond());
+        long end = -g.floor(-upper.getEpochSecond());
+        if (end <= start) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from должен быть раньше to");
+        }
+        if ((end - start) / g.seconds() > maxBuckets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Слишком много интервалов, максимум " + maxBuckets + ": уменьшите диапазон или укрупните granularity");
+        }
+
+        List<TickRollupService.Bucket> buckets = rollup.stats(g, Instant.ofEpochSecond(start), Instant.ofEpochSecond(end));
+        long total = buckets.stream().mapToLong(TickRollupService.Bucket::getCount).sum();
+        return new TickStatsResponse(g.name().toLowerCase(),
+                format(Instant.ofEpochSecond(start)), format(Instant.ofEpochSecond(end)),
+                total, (double) total / (end - start),
+                buckets.stream()
+                        .map(b -> new TickStatsResponse.Bucket(format(b.getStart()), b.getCount()))
+                        .collect(Collectors.toList()));
+    }
+
+    // Пропуски меток в [from, to) по индексу полноты в памяти, без чтения таблицы; по умолчанию — последние сутки
+    @GetMapping("/ticks/gaps")
+    public TickGapsResponse gaps(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        if (!singleWriter) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Индекс полноты не ведётся: в БД пишут несколько экземпляров (app.single-writer=false)");
+        }
+        if (!index.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Индекс полноты ещё не загружен");
+        }
+        Instant upper = to == null ? Instant.now() : to;
+        Instant lower = from == null ? upper.minus(Duration.ofDays(1)) : from;
+        // Метки посекундные: границы расширяются до целых секунд
+        long start = lower.getEpochSecond();
+        long end = upper.getNano() == 0 ? upper.getEpochSecond() : upper.getEpochSecond() + 1;
+        if (end <= start) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from должен быть раньше to");
+        }
+
+        List<long[]> gaps = new ArrayList<>();
+        long missing = index.bitmap().gaps(start, end, (s, e) -> {
+            if (gaps.size() == maxGaps) return false;
+            gaps.add(new long[]{toMicros(s), toMicros(e)});
+            return true;
+        });
+        long listed = gaps.stream().mapToLong(g -> (g[1] - g[0]) / MICROS_PER_SECOND).sum();
+        return new TickGapsResponse(toMicros(start), toMicros(end), missing, listed < missing, gaps);
+    }
+
+    // У каждого формата и зоны своё представление — и свой ETag ("база-формат-зона"); JSON без zone сохраняет
+    // общий с /ticks/latest. null — ETag не выдаётся (app.single-writer=false)
+    static String etag(String base, TickFormat format, ZoneId zone) {
+        if (base == null || format == TickFormat.JSON && zone == null) return base;
+        StringBuilder tag = new StringBuilder(base.length() + 48).append(base, 0, base.length() - 1)
+                .append('-').append(format.name().toLowerCase());
+        if (zone != null) tag.append('-').append(zone.getId());
+        return tag.append('"').toString();
+    }
+
+    // If-None-Match: список ETag через запятую или "*"; слабые (W/) сравниваются как обычные
+    static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static ResponseEntity.BodyBuilder withEtag(ResponseEntity.BodyBuilder response, String etag) {
+        return etag == null ? response : response.eTag(etag);
+    }
+
+    private static long toMicros(long epochSecond) {
+        return Math.multiplyExact(epochSecond, MICROS_PER_SECOND);
+    }
+
+    private ZonedTickFormatter formatter(ZoneId zone) {
+        return new ZonedTickFormatter(zone == null ? appZone : zone);
+    }
+
+    private String format(Instant ts) {
+        return ZonedDateTime.ofInstant(ts, appZone).toString();
+    }
+
+    private static Instant lower(Instant from) {
+        return from == null ? TickQueryService.MIN : from;
+    }
+
+    private static Instant upper(Instant to) {
+        return to == null ? TickQueryService.MAX : to;
     }
 }
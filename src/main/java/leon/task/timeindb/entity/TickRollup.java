@@ -0,0 +1,53 @@
+package leon.task.timeindb.entity;
+
+import leon.task.timeindb.service.Granularity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+// Количество меток в интервале времени (минута или час, UTC); поддерживается BatchWriterService в транзакции записи
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = TickRollup.TABLE)
+@IdClass(TickRollup.Key.class)
+public class TickRollup {
+
+    public static final String TABLE = "tick_rollup"; // Имя таблицы, используется в нативных SQL-запросах
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Granularity granularity;
+
+    @Id
+    @Column(nullable = false)
+    private Instant bucketStart; // Начало интервала
+
+    @Column(nullable = false)
+    private long tickCount;
+
+    // Составной ключ (granularity, bucket_start)
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Granularity granularity;
+        private Instant bucketStart;
+    }
+}
@@ -10,6 +10,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import java.time.Instant;
 
 @Entity
@@ -18,15 +20,26 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+// Метка уникальна в пределах источника. В существующей БД старое ограничение unique(created_at) ddl-auto=update
+// не удаляет — его снимает при старте UniqueKeyMigration
+@Table(name = TimeEntity.TABLE, uniqueConstraints = @UniqueConstraint(
+        name = TimeEntity.TABLE + "_source_created_at_key", columnNames = {"source", "created_at"}))
 public class TimeEntity {
 
+    public static final String TABLE = "time_entity"; // Имя таблицы, используется в нативных SQL-запросах
+    public static final int DEFAULT_SOURCE = 0; // Генератор меток и POST /ticks без source; чтение, статистика и индексы — по нему
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, // NOT NULL, гарантирует, что у каждой записи будет время создания
-            updatable = false, // Запрет на обновление после создания, защита от случайного изменения
-            unique = true)  // Уникальность значения в таблице, предотвращает дублирование временных меток
+    // Логический источник меток (устройство, клиент); DEFAULT 0 — существующие строки и вставки без source
+    @Column(nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private int source;
+
+    @Column(name = "created_at", // Явное имя: на него ссылается ограничение уникальности в @Table
+            nullable = false, // NOT NULL, гарантирует, что у каждой записи будет время создания
+            updatable = false) // Запрет на обновление после создания, защита от случайного изменения
     // Хранение момента времени (timestamp) в БД
     private Instant createdAt;
 }
@@ -0,0 +1,250 @@
+package leon.task.timeindb.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Arrays;
+
+/*
+ * Потоковая запись меток в выбранном формате. Байты собираются в собственном буфере и уходят в поток
+ * порциями по BUFFER_SIZE — без Writer и кодирования символов: все форматы ASCII.
+ *
+ * Числовые форматы (EPOCH_JSON, NDJSON, CSV) пишут epoch seconds; доли секунды, если есть, — дробной частью
+ * с точностью до микросекунд (как хранит PostgreSQL). При заданной зоне NDJSON и CSV пишут строки
+ * в формате ZonedDateTime.toString(). BINARY — только секунды: первое значение и далее разности соседних,
+ * каждое в zigzag + беззнаковом LEB128 (1 байт на метку при шаге до 63 секунд).
+ */
+public abstract class TickEncoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VALUE_BYTES = 128; // С запасом на строку с длинным именем зоны
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    protected long count; // Записано меток
+
+    protected TickEncoder(OutputStream out) {
+        this.out = out;
+    }
+
+    // zone — для JSON обязателен, для NDJSON и CSV необязателен (null — epoch seconds), для остальных не используется
+    public static TickEncoder open(TickFormat format, OutputStream out, ZonedTickFormatter zone) throws IOException {
+        TickEncoder encoder;
+        switch (format) {
+            case JSON:
+                encoder = new JsonArray(out, zone, true);
+                break;
+            case EPOCH_JSON:
+                encoder = new JsonArray(out, null, false);
+                break;
+            case NDJSON:
+                encoder = new Lines(out, zone, zone != null, null);
+                break;
+            case CSV:
+                encoder = new Lines(out, zone, false, "created_at");
+                break;
+            case BINARY:
+                encoder = new VarintDelta(out);
+                break;
+            default:
+                throw new IllegalArgumentException(format.name());
+        }
+        encoder.begin();
+        return encoder;
+    }
+
+    public final void write(Instant ts) throws IOException {
+        if (pos > BUFFER_SIZE - MAX_VALUE_BYTES) flushBuffer();
+        encode(ts);
+        count++;
+    }
+
+    // Завершение документа и сброс буфера; поток не закрывается
+    public final void finish() throws IOException {
+        end();
+        flushBuffer();
+        out.flush();
+    }
+
+    protected void begin() {
+    }
+
+    protected abstract void encode(Instant ts);
+
+    protected void end() {
+    }
+
+    protected final void put(char c) {
+        buf[pos++] = (byte) c;
+    }
+
+    protected final void put(String s) {
+        if (pos + s.length() > BUFFER_SIZE) throw new IllegalStateException("Значение длиннее буфера: " + s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i); // Только ASCII — кодировщик не нужен
+        }
+    }
+
+    // Epoch seconds с дробной частью до микросекунд (конечные нули отбрасываются)
+    protected final void putEpoch(Instant ts) {
+        putLong(ts.getEpochSecond());
+        int micros = ts.getNano() / 1000;
+        if (micros == 0) return;
+        put('.');
+        int width = 6;
+        while (micros % 10 == 0) {
+            micros /= 10;
+            width--;
+        }
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + micros % 10);
+            micros /= 10;
+        }
+        pos += width;
+    }
+
+    protected final void putLong(long v) {
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) {
+                put(Long.toString(v));
+                return;
+            }
+            put('-');
+            v = -v;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) { // Цифры записаны с конца — разворот
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    protected final void putVarint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    // JSON-массив строк в зоне или чисел epoch seconds
+    private static final class JsonArray extends TickEncoder {
+        private final ZonedTickFormatter zone;
+        private final boolean strings;
+
+        JsonArray(OutputStream out, ZonedTickFormatter zone, boolean strings) {
+            super(out);
+            this.zone = zone;
+            this.strings = strings;
+        }
+
+        @Override
+        protected void begin() {
+            put('[');
+        }
+
+        @Override
+        protected void encode(Instant ts) {
+            if (count > 0) put(',');
+            if (strings) {
+                put('"');
+                put(zone.format(ts)); // Строка ZonedDateTime не содержит символов, требующих экранирования
+                put('"');
+            } else {
+                putEpoch(ts);
+            }
+        }
+
+        @Override
+        protected void end() {
+            put(']');
+        }
+    }
+
+    // По значению на строку: NDJSON (строки в кавычках) и CSV (с заголовком, строки без кавычек)
+    private static final class Lines extends TickEncoder {
+        private final ZonedTickFormatter zone;
+        private final boolean quote;
+        private final String header;
+
+        Lines(OutputStream out, ZonedTickFormatter zone, boolean quote, String header) {
+            super(out);
+            this.zone = zone;
+            this.quote = quote;
+            this.header = header;
+        }
+
+        @Override
+        protected void begin() {
+            if (header != null) {
+                put(header);
+                put('\n');
+            }
+        }
+
+        @Override
+        protected void encode(Instant ts) {
+            if (zone == null) {
+                putEpoch(ts);
+            } else if (quote) {
+                put('"');
+                put(zone.format(ts));
+                put('"');
+            } else {
+                put(zone.format(ts));
+            }
+            put('\n');
+        }
+    }
+
+    // Разности соседних секунд в zigzag-varint; первая метка — разность с нулём
+    private static final class VarintDelta extends TickEncoder {
+        private long previous;
+
+        VarintDelta(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        protected void encode(Instant ts) {
+            long second = ts.getEpochSecond();
+            long delta = second - previous;
+            putVarint((delta << 1) ^ (delta >> 63)); // Zigzag: небольшие отрицательные разности тоже короткие
+            previous = second;
+        }
+    }
+
+    // Для тестов и клиентов на JVM: разбор BINARY обратно в epoch seconds
+    public static long[] decodeVarintDeltas(byte[] data) {
+        long[] result = new long[data.length]; // Не меньше одного байта на метку
+        int n = 0;
+        long previous = 0;
+        for (int i = 0; i < data.length; ) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (i == data.length) throw new IllegalArgumentException("Оборванное значение в конце данных");
+                b = data[i++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (v >>> 1) ^ -(v & 1);
+            result[n++] = previous;
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
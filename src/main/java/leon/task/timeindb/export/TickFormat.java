@@ -0,0 +1,45 @@
+package leon.task.timeindb.export;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+// Форматы выгрузки меток, выбираемые по заголовку Accept
+public enum TickFormat {
+
+    JSON(MediaType.APPLICATION_JSON),                                 // ["2025-09-15T13:00+03:00[Europe/Moscow]", ...] — как раньше
+    EPOCH_JSON(MediaType.parseMediaType("application/vnd.ticks.epoch+json")), // [1757930400, ...]
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),         // Epoch seconds (или строка в кавычках при zone) на строку
+    CSV(MediaType.parseMediaType("text/csv")),                        // Заголовок created_at и по значению на строку
+    BINARY(MediaType.APPLICATION_OCTET_STREAM);                       // Varint-дельты между соседними секундами
+
+    private final MediaType mediaType;
+
+    TickFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    // Первый поддерживаемый формат в порядке предпочтения клиента; без Accept, при */* и при неизвестных типах — JSON
+    public static TickFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) return JSON;
+        List<MediaType> requested;
+        try {
+            requested = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(requested);
+        for (MediaType type : requested) {
+            if (type.isWildcardType()) return JSON;
+            for (TickFormat f : values()) {
+                if (type.includes(f.mediaType)) return f; // application/* выбирает JSON — он первый
+            }
+        }
+        return JSON;
+    }
+}
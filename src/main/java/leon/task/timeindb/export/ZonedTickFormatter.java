@@ -0,0 +1,57 @@
+package leon.task.timeindb.export;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/*
+ * Строковое представление метки в зоне — то же, что ZonedDateTime.ofInstant(ts, zone).toString(),
+ * но без поиска правил зоны на каждую метку: смещение запоминается вместе с интервалом между соседними
+ * переходами (летнее время и т.п.), и для меток внутри интервала правила не запрашиваются.
+ * Метки выгрузки идут по возрастанию, поэтому интервал меняется редко. Не потокобезопасен — один на выгрузку.
+ */
+public final class ZonedTickFormatter {
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final boolean fixed;  // Постоянное смещение (UTC, +03:00): переходов нет
+
+    private ZoneOffset offset;
+    private String suffix;        // "+03:00[Europe/Moscow]"
+    private long validFrom = Long.MAX_VALUE; // Интервал [validFrom, validUntil) epoch seconds с текущим смещением
+    private long validUntil = Long.MIN_VALUE;
+
+    public ZonedTickFormatter(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.fixed = rules.isFixedOffset();
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public String format(Instant ts) {
+        long second = ts.getEpochSecond();
+        if (second < validFrom || second >= validUntil) resolve(ts);
+        return LocalDateTime.ofEpochSecond(second, ts.getNano(), offset) + suffix;
+    }
+
+    private void resolve(Instant ts) {
+        offset = rules.getOffset(ts);
+        // Как в ZonedDateTime.toString(): имя зоны в скобках выводится, только если зона — не само смещение
+        suffix = zone instanceof ZoneOffset ? offset.toString() : offset + "[" + zone + "]";
+        if (fixed) {
+            validFrom = Long.MIN_VALUE;
+            validUntil = Long.MAX_VALUE;
+            return;
+        }
+        ZoneOffsetTransition previous = rules.previousTransition(ts.plusNanos(1)); // Переход ровно в ts тоже учитывается
+        ZoneOffsetTransition next = rules.nextTransition(ts);
+        validFrom = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+        validUntil = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+    }
+}
@@ -0,0 +1,31 @@
+package leon.task.timeindb.health;
+
+import leon.task.timeindb.service.DbCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Состояние записи в БД в /actuator/health (компонент dbCircuit): состояние автомата, неудачи подряд, пауза до проверки.
+// В отличие от стандартного индикатора db, к БД не обращается — показывает, что видит конвейер записи
+@Component
+@RequiredArgsConstructor
+public class DbCircuitHealthIndicator implements HealthIndicator {
+
+    private final DbCircuitBreaker breaker;
+
+    @Override
+    public Health health() {
+        DbCircuitBreaker.State state = breaker.state();
+        Health.Builder health = state == DbCircuitBreaker.State.OPEN ? Health.down() : Health.up();
+        health.withDetail("state", state)
+                .withDetail("since", breaker.since().toString())
+                .withDetail("failures", breaker.failures());
+        if (state == DbCircuitBreaker.State.OPEN) {
+            health.withDetail("nextProbeInMs", breaker.nextProbeInMs(System.currentTimeMillis()));
+        }
+        String error = breaker.lastError();
+        if (error != null) health.withDetail("lastError", error);
+        return health.build();
+    }
+}
@@ -0,0 +1,329 @@
+package leon.task.timeindb.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Множество секунд (epoch seconds), в которые есть метка, в сжатом виде по суткам — как в roaring bitmap:
+ *
+ * - сутки с небольшим числом меток хранятся отсортированным массивом секунд от начала суток (4 байта на метку);
+ * - когда массив становится больше битовой карты суток (86400 бит = 10 800 байт), сутки переводятся в битовую карту;
+ * - сутки без меток не хранятся вовсе.
+ *
+ * Добавление идемпотентно и коммутативно, поэтому начальная загрузка из БД и дозапись новых батчей
+ * могут идти одновременно. Потокобезопасно: чтение под read-lock, изменение под write-lock.
+ */
+public class SecondBitmap {
+
+    static final int SECONDS_PER_DAY = 86400;
+    static final int ARRAY_MAX = SECONDS_PER_DAY / 32; // 2700 int = 10 800 байт — дальше битовая карта компактнее
+
+    // Получатель пропусков: интервал секунд [start, end)
+    @FunctionalInterface
+    public interface GapSink {
+        // false — остановить перебор
+        boolean accept(long start, long end);
+    }
+
+    private final TreeMap<Long, Container> days = new TreeMap<>(); // Номер суток от эпохи -> секунды этих суток
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public boolean add(long epochSecond) {
+        lock.writeLock().lock();
+        try {
+            return addLocked(epochSecond);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Добавление n секунд одним захватом блокировки
+    public void addAll(long[] epochSeconds, int n) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < n; i++) {
+                addLocked(epochSeconds[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление всех секунд раньше epochSecond (метки удалены из БД по сроку хранения): сутки целиком
+    // и начало суток, в которые попадает граница — иначе удалённые секунды считались бы записанными
+    public void removeBefore(long epochSecond) {
+        lock.writeLock().lock();
+        try {
+            long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+            days.headMap(day).clear();
+            Container c = days.get(day);
+            if (c != null && c.removeBefore(Math.floorMod(epochSecond, SECONDS_PER_DAY)) == 0) days.remove(day);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long epochSecond) {
+        lock.readLock().lock();
+        try {
+            Container c = days.get(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+            return c != null && c.contains(Math.floorMod(epochSecond, SECONDS_PER_DAY));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Отметки seconds[0..n), уже присутствующих в карте, — одним захватом блокировки на весь батч
+    public BitSet containsAll(long[] epochSeconds, int n) {
+        BitSet found = new BitSet(n);
+        lock.readLock().lock();
+        try {
+            long cachedDay = Long.MIN_VALUE;
+            Container c = null;
+            for (int i = 0; i < n; i++) {
+                long day = Math.floorDiv(epochSeconds[i], SECONDS_PER_DAY);
+                if (day != cachedDay) { // Метки батча обычно из одних суток — поиск в TreeMap один раз
+                    c = days.get(day);
+                    cachedDay = day;
+                }
+                if (c != null && c.contains(Math.floorMod(epochSeconds[i], SECONDS_PER_DAY))) found.set(i);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    // Количество секунд с меткой
+    public long cardinality() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Container c : days.values()) total += c.cardinality();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Примерный объём занятой памяти (только данные контейнеров)
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Container c : days.values()) total += c.sizeInBytes();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Пропуски в [from, to) по возрастанию: соседние пропуски на границе суток склеиваются в один интервал.
+     * Возвращает общее число секунд без метки (считается и после остановки перебора получателем).
+     */
+    public long gaps(long from, long to, GapSink sink) {
+        if (to <= from) return 0;
+        lock.readLock().lock();
+        try {
+            GapCollector out = new GapCollector(sink);
+            long firstDay = Math.floorDiv(from, SECONDS_PER_DAY);
+            long lastDay = Math.floorDiv(to - 1, SECONDS_PER_DAY);
+            long pos = from; // Всё до pos уже разобрано
+            for (Map.Entry<Long, Container> e : days.subMap(firstDay, true, lastDay, true).entrySet()) {
+                long dayStart = e.getKey() * SECONDS_PER_DAY;
+                if (pos < dayStart) {
+                    out.gap(pos, dayStart); // Сутки без меток целиком
+                    pos = dayStart;
+                }
+                long dayEnd = Math.min(dayStart + SECONDS_PER_DAY, to);
+                e.getValue().gaps((int) (pos - dayStart), (int) (dayEnd - dayStart),
+                        (s, end) -> out.gap(dayStart + s, dayStart + end));
+                pos = dayEnd;
+            }
+            if (pos < to) out.gap(pos, to);
+            out.flush();
+            return out.missing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean addLocked(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int second = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        Container c = days.get(day);
+        if (c == null) {
+            c = new ArrayContainer();
+            days.put(day, c);
+        }
+        if (c.contains(second)) return false;
+        Container updated = c.add(second);
+        if (updated != c) days.put(day, updated); // Массив переполнился и превратился в битовую карту
+        return true;
+    }
+
+    // Склейка соседних интервалов и подсчёт пропущенных секунд
+    private static final class GapCollector {
+        private final GapSink sink;
+        private boolean stopped;
+        private boolean open;   // Есть незакрытый интервал [start, end)
+        private long start, end;
+        long missing;
+
+        GapCollector(GapSink sink) {
+            this.sink = sink;
+        }
+
+        void gap(long s, long e) {
+            missing += e - s;
+            if (open && s == end) {
+                end = e; // Продолжение предыдущего пропуска
+                return;
+            }
+            flush();
+            open = true;
+            start = s;
+            end = e;
+        }
+
+        void flush() {
+            if (open && !stopped) stopped = !sink.accept(start, end);
+            open = false;
+        }
+    }
+
+    @FunctionalInterface
+    interface IntGapSink {
+        void accept(int start, int end);
+    }
+
+    // Секунды одних суток (0..86399)
+    abstract static class Container {
+        abstract boolean contains(int second);
+
+        // Возвращает контейнер после добавления (может быть новым); second ещё не содержится
+        abstract Container add(int second);
+
+        abstract int cardinality();
+
+        // Удаление секунд раньше second; возвращает оставшееся число секунд
+        abstract int removeBefore(int second);
+
+        abstract long sizeInBytes();
+
+        // Пропуски в [from, to)
+        abstract void gaps(int from, int to, IntGapSink sink);
+    }
+
+    // Отсортированный массив секунд — для разреженных суток
+    static final class ArrayContainer extends Container {
+        private int[] values = new int[8];
+        private int size;
+
+        @Override
+        boolean contains(int second) {
+            return Arrays.binarySearch(values, 0, size, second) >= 0;
+        }
+
+        @Override
+        Container add(int second) {
+            if (size == ARRAY_MAX) {
+                BitmapContainer bitmap = new BitmapContainer(this);
+                return bitmap.add(second);
+            }
+            int at = -Arrays.binarySearch(values, 0, size, second) - 1;
+            if (size == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = second;
+            size++;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int removeBefore(int second) {
+            int from = Arrays.binarySearch(values, 0, size, second);
+            if (from < 0) from = -from - 1;
+            System.arraycopy(values, from, values, 0, size - from);
+            size -= from;
+            return size;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) values.length * Integer.BYTES;
+        }
+
+        @Override
+        void gaps(int from, int to, IntGapSink sink) {
+            int pos = from;
+            int i = Arrays.binarySearch(values, 0, size, from);
+            if (i < 0) i = -i - 1;
+            for (; i < size && values[i] < to; i++) {
+                if (values[i] > pos) sink.accept(pos, values[i]);
+                pos = values[i] + 1;
+            }
+            if (pos < to) sink.accept(pos, to);
+        }
+    }
+
+    // Битовая карта суток — для плотных суток
+    static final class BitmapContainer extends Container {
+        private final BitSet bits = new BitSet(SECONDS_PER_DAY);
+        private int cardinality;
+
+        BitmapContainer(ArrayContainer from) {
+            for (int i = 0; i < from.size; i++) bits.set(from.values[i]);
+            cardinality = from.size;
+        }
+
+        @Override
+        boolean contains(int second) {
+            return bits.get(second);
+        }
+
+        @Override
+        Container add(int second) {
+            bits.set(second);
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int removeBefore(int second) {
+            bits.clear(0, second);
+            cardinality = bits.cardinality();
+            return cardinality;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return SECONDS_PER_DAY / 8;
+        }
+
+        @Override
+        void gaps(int from, int to, IntGapSink sink) {
+            int pos = bits.nextClearBit(from);
+            while (pos < to) {
+                int next = bits.nextSetBit(pos);
+                int end = next < 0 || next > to ? to : next;
+                sink.accept(pos, end);
+                if (end == to) return;
+                pos = bits.nextClearBit(end);
+            }
+        }
+    }
+}
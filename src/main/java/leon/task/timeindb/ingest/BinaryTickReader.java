@@ -0,0 +1,54 @@
+package leon.task.timeindb.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Тело application/octet-stream: подряд идущие int64 big-endian epoch seconds
+public final class BinaryTickReader implements TickReader {
+
+    private final InputStream in;
+    private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024); // Порядок байт по умолчанию — big-endian
+    private long offset; // Смещение следующей метки в теле, байт
+    private boolean eof;
+
+    public BinaryTickReader(InputStream in) {
+        this.in = in;
+        buf.limit(0);
+    }
+
+    @Override
+    public int read(long[] dst, int max) throws IOException {
+        int n = 0;
+        int limit = Math.min(max, dst.length);
+        while (n < limit) {
+            if (buf.remaining() < Long.BYTES && !fill()) break;
+            long value = buf.getLong(buf.position()); // Позиция сдвигается только для корректной метки
+            if (n > 0 && (value < MIN_SECOND || value > MAX_SECOND)) break; // Ошибка — при следующем вызове
+            dst[n++] = TickReader.checkRange(value, "байт " + offset);
+            buf.position(buf.position() + Long.BYTES);
+            offset += Long.BYTES;
+        }
+        if (n == 0 && eof && buf.hasRemaining()) {
+            throw new IllegalArgumentException("байт " + offset + ": длина тела не кратна 8 (" + buf.remaining() + " лишних байт)");
+        }
+        return n;
+    }
+
+    // Дочитывает буфер; false — полной метки больше нет
+    private boolean fill() throws IOException {
+        if (!eof) {
+            buf.compact();
+            while (buf.position() < Long.BYTES) {
+                int r = in.read(buf.array(), buf.position(), buf.remaining());
+                if (r < 0) {
+                    eof = true;
+                    break;
+                }
+                buf.position(buf.position() + r);
+            }
+            buf.flip();
+        }
+        return buf.remaining() >= Long.BYTES;
+    }
+}
@@ -0,0 +1,125 @@
+package leon.task.timeindb.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/*
+ * Тело application/x-ndjson: по одной метке на строку — число epoch seconds (дробная часть отбрасывается)
+ * или строка ISO-8601 в кавычках ("2025-09-15T10:00:00Z"). Пустые строки пропускаются.
+ * Числа разбираются прямо из байтов, без создания строк на каждую метку.
+ */
+public final class NdjsonTickReader implements TickReader {
+
+    private static final int MAX_QUOTED = 64; // Предел длины строки с датой
+
+    private final InputStream in;
+    private final byte[] buf = new byte[64 * 1024];
+    private int pos, limit;
+    private long line = 1;
+    private IllegalArgumentException pending; // Ошибка, найденная после уже прочитанных в порцию меток
+
+    public NdjsonTickReader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(long[] dst, int max) throws IOException {
+        if (pending != null) throw pending;
+        int n = 0;
+        int cap = Math.min(max, dst.length);
+        try {
+            while (n < cap) {
+                int c = next();
+                if (c < 0) break;
+                if (c == '\n') {
+                    line++;
+                } else if (!isSpace(c)) {
+                    long value = c == '"' ? quoted() : number(c);
+                    TickReader.checkRange(value, where());
+                    endOfLine(); // Метка принимается только из корректной строки целиком
+                    dst[n++] = value;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            if (n == 0) throw e;
+            pending = e; // Метки до ошибочной строки отдаются, ошибка — при следующем вызове
+        }
+        return n;
+    }
+
+    // Целые epoch seconds; дробная часть отбрасывается с округлением вниз, как truncatedTo(SECONDS)
+    private long number(int c) throws IOException {
+        boolean negative = c == '-';
+        if (negative) c = next();
+        if (c < '0' || c > '9') throw error("ожидается число или строка в кавычках");
+        long value = 0;
+        int digits = 0;
+        for (; c >= '0' && c <= '9'; c = next()) {
+            if (++digits > 18) throw error("слишком длинное число");
+            value = value * 10 + (c - '0');
+        }
+        boolean fraction = false;
+        if (c == '.') {
+            for (c = next(); c >= '0' && c <= '9'; c = next()) {
+                fraction |= c != '0';
+            }
+        }
+        unread(c);
+        return negative ? -value - (fraction ? 1 : 0) : value;
+    }
+
+    private long quoted() throws IOException {
+        StringBuilder sb = new StringBuilder(32);
+        for (int c = next(); c != '"'; c = next()) {
+            if (c < 0 || c == '\n' || sb.length() == MAX_QUOTED) throw error("незакрытая строка");
+            sb.append((char) c);
+        }
+        try {
+            return Instant.parse(sb).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            throw error("некорректная дата " + sb);
+        }
+    }
+
+    // После значения в строке допускаются только пробелы
+    private void endOfLine() throws IOException {
+        for (int c = next(); c >= 0; c = next()) {
+            if (c == '\n') {
+                line++;
+                return;
+            }
+            if (!isSpace(c)) throw error("после значения ожидается конец строки");
+        }
+    }
+
+    private int next() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    // Возврат последнего прочитанного символа (конец данных возвращать не нужно)
+    private void unread(int c) {
+        if (c >= 0) pos--;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private String where() {
+        return "строка " + line;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(where() + ": " + message);
+    }
+}
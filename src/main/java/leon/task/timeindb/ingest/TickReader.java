@@ -0,0 +1,23 @@
+package leon.task.timeindb.ingest;
+
+import leon.task.timeindb.service.TickQueryService;
+
+import java.io.IOException;
+
+// Потоковое чтение меток (epoch seconds) из тела запроса порциями, без чтения тела целиком
+public interface TickReader {
+
+    long MIN_SECOND = TickQueryService.MIN.getEpochSecond();
+    long MAX_SECOND = TickQueryService.MAX.getEpochSecond();
+
+    // Читает до max следующих меток в dst[0..n); 0 — конец данных.
+    // Некорректные данные — IllegalArgumentException с указанием места ошибки
+    int read(long[] dst, int max) throws IOException;
+
+    static long checkRange(long epochSecond, String where) {
+        if (epochSecond < MIN_SECOND || epochSecond > MAX_SECOND) {
+            throw new IllegalArgumentException(where + ": метка " + epochSecond + " вне диапазона 0001..9999 годов");
+        }
+        return epochSecond;
+    }
+}
@@ -0,0 +1,314 @@
+package leon.task.timeindb.journal;
+
+import leon.task.timeindb.buffer.TickBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/*
+ * Журнал меток на диске для офлайн-режима: append-only файл с фиксированным форматом.
+ *
+ * Заголовок (32 байта): magic (int), version (int), commitOffset (long), crc заголовка (int), резерв.
+ * Запись (16 байт):     epochSecond (long), crc32c значения (int), маркер записи (int).
+ *
+ * Записи до commitOffset уже записаны в БД, после — ждут дозаписи. Воспроизведение — последовательное
+ * чтение от commitOffset; недописанный или повреждённый хвост отбрасывается при открытии.
+ */
+@Slf4j
+public class TickJournal implements Closeable {
+
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+    private static final int HEADER_MAGIC = 0x544A4E4C; // "TJNL"
+    private static final int VERSION = 1;
+    private static final int RECORD_MARKER = 0x7E1C7E1C;
+    private static final int IO_CHUNK = 4096; // Записей за одну операцию ввода-вывода
+
+    private final Path file;
+    private final FileChannel channel; // null — журнал отключён
+    private final ByteBuffer io = ByteBuffer.allocateDirect(IO_CHUNK * RECORD_SIZE); // Буфер ввода-вывода (только под монитором)
+    private final CRC32C crc = new CRC32C();
+
+    private long commitOffset = HEADER_SIZE; // Всё до этого смещения записано в БД
+    private long readOffset = HEADER_SIZE;   // Следующая запись для воспроизведения
+    private long writeOffset = HEADER_SIZE;  // Конец файла
+    private boolean active;                  // Новые метки идут в журнал, а не в буфер
+    private boolean dirty;                   // Есть записи, не сброшенные на диск
+
+    private TickJournal(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    // Журнал-заглушка: ничего не хранит, appendIfActive всегда возвращает false
+    public static TickJournal disabled() {
+        return new TickJournal(null, null);
+    }
+
+    // Открытие (или создание) журнала и восстановление недописанных меток с прошлого запуска
+    public static TickJournal open(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TickJournal journal = new TickJournal(file, channel);
+        journal.recover();
+        return journal;
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    public synchronized boolean isActive() {
+        return active;
+    }
+
+    // Количество меток, ещё не подтверждённых коммитом в БД
+    public synchronized long pending() {
+        return (writeOffset - commitOffset) / RECORD_SIZE;
+    }
+
+    // Дописывает метку в журнал, если он активен; иначе метка должна идти в буфер
+    public synchronized boolean appendIfActive(long epochSecond) {
+        if (!active) return false;
+        try {
+            io.clear();
+            putRecord(epochSecond);
+            io.flip();
+            writeFully(writeOffset);
+            return true;
+        } catch (IOException e) {
+            log.error("Не удалось дописать метку в журнал {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    // Дописывает src[0..n) в журнал, если он активен; false — метки должны идти в буфер
+    public synchronized boolean appendAllIfActive(long[] src, int n) {
+        if (!active) return false;
+        int done = 0;
+        try {
+            while (done < n) {
+                int part = Math.min(n - done, IO_CHUNK);
+                io.clear();
+                for (int i = 0; i < part; i++) {
+                    putRecord(src[done + i]);
+                }
+                io.flip();
+                writeFully(writeOffset);
+                done += part;
+            }
+            return true;
+        } catch (IOException e) {
+            // Уже дописанная часть останется в журнале; повтор в буфере отбросит БД как дубли
+            log.error("Не удалось дописать {} меток в журнал {}: {}", n - done, file, e.getMessage());
+            return false;
+        }
+    }
+
+    // Активирует журнал и переносит в него всё содержимое буфера (в исходном порядке); возвращает число перенесённых меток
+    public synchronized long spill(TickBuffer buffer) {
+        if (channel == null) return 0;
+        active = true;
+        long total = 0;
+        long[] chunk = new long[IO_CHUNK];
+        int n;
+        while ((n = buffer.drainTo(chunk, chunk.length)) > 0) {
+            try {
+                io.clear();
+                for (int i = 0; i < n; i++) {
+                    putRecord(chunk[i]);
+                }
+                io.flip();
+                writeFully(writeOffset);
+                total += n;
+            } catch (IOException e) {
+                buffer.pushFront(chunk, n); // Не теряем метки: возвращаем их в буфер
+                active = writeOffset > commitOffset;
+                throw new UncheckedIOException("Не удалось перенести буфер в журнал " + file, e);
+            }
+        }
+        sync();
+        return total;
+    }
+
+    // Чтение до max следующих меток для дозаписи в БД; после записи нужен commit() или rewind()
+    public synchronized int read(long[] dst, int max) {
+        if (channel == null) return 0;
+        long available = (writeOffset - readOffset) / RECORD_SIZE;
+        int n = (int) Math.min(Math.min(max, dst.length), available);
+        int done = 0;
+        try {
+            while (done < n) {
+                int part = Math.min(n - done, IO_CHUNK);
+                io.clear().limit(part * RECORD_SIZE);
+                readFully(readOffset + (long) done * RECORD_SIZE);
+                io.flip();
+                for (int i = 0; i < part; i++) {
+                    dst[done + i] = io.getLong(i * RECORD_SIZE); // CRC уже проверен при открытии
+                }
+                done += part;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать журнал " + file, e);
+        }
+        readOffset += (long) n * RECORD_SIZE;
+        return n;
+    }
+
+    // Подтверждение: всё прочитанное записано в БД. Полностью записанный журнал обрезается и деактивируется
+    public synchronized void commit() {
+        if (channel == null || readOffset == commitOffset) return;
+        try {
+            if (readOffset == writeOffset) {
+                channel.truncate(HEADER_SIZE); // Всё записано — файл снова пуст
+                commitOffset = readOffset = writeOffset = HEADER_SIZE;
+                active = false;
+            } else {
+                commitOffset = readOffset;
+            }
+            writeHeader();
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось зафиксировать журнал " + file, e);
+        }
+    }
+
+    // Откат чтения после неудачной записи в БД: следующие read() вернут те же метки
+    public synchronized void rewind() {
+        readOffset = commitOffset;
+    }
+
+    // Сброс дописанных меток на диск
+    public synchronized void sync() {
+        if (channel == null || !dirty) return;
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            log.error("Не удалось сбросить журнал {} на диск: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null || !channel.isOpen()) return;
+        sync();
+        channel.close();
+    }
+
+    // Чтение заголовка и последовательная проверка записей после commitOffset
+    private void recover() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader();
+            channel.force(false);
+            return;
+        }
+        io.clear().limit(HEADER_SIZE);
+        readFully(0);
+        io.flip();
+        int magic = io.getInt(0);
+        long committed = io.getLong(8);
+        crc.reset();
+        crc.update(io.duplicate().limit(16));
+        if (magic != HEADER_MAGIC || io.getInt(4) != VERSION || io.getInt(16) != (int) crc.getValue()
+                || committed < HEADER_SIZE || (committed - HEADER_SIZE) % RECORD_SIZE != 0) {
+            // Заголовок повреждён: безопаснее переиграть весь журнал, дубли отбросит БД
+            log.warn("Заголовок журнала {} повреждён — воспроизводим журнал целиком", file);
+            committed = HEADER_SIZE;
+        }
+
+        long end = scanValidRecords(Math.min(committed, channel.size()));
+        if (end < channel.size()) {
+            log.warn("Журнал {}: отброшен повреждённый хвост {} байт", file, channel.size() - end);
+            channel.truncate(end);
+        }
+        commitOffset = readOffset = Math.min(committed, end);
+        writeOffset = end;
+        active = writeOffset > commitOffset;
+        writeHeader();
+        channel.force(false);
+        if (active) {
+            log.info("Журнал {}: найдено {} недописанных меток, они будут записаны в БД", file, pending());
+        }
+    }
+
+    // Возвращает смещение конца последней целой записи
+    private long scanValidRecords(long from) throws IOException {
+        long pos = from;
+        long size = channel.size();
+        while (pos + RECORD_SIZE <= size) {
+            int part = (int) Math.min(IO_CHUNK, (size - pos) / RECORD_SIZE);
+            io.clear().limit(part * RECORD_SIZE);
+            readFully(pos);
+            io.flip();
+            for (int i = 0; i < part; i++) {
+                int at = i * RECORD_SIZE;
+                if (io.getInt(at + 12) != RECORD_MARKER || io.getInt(at + 8) != crcOf(io.getLong(at))) {
+                    return pos + at;
+                }
+            }
+            pos += (long) part * RECORD_SIZE;
+        }
+        return pos;
+    }
+
+    private void putRecord(long epochSecond) {
+        io.putLong(epochSecond);
+        io.putInt(crcOf(epochSecond));
+        io.putInt(RECORD_MARKER);
+    }
+
+    private int crcOf(long value) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (value >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    private void writeHeader() throws IOException {
+        io.clear();
+        io.putInt(HEADER_MAGIC).putInt(VERSION).putLong(commitOffset);
+        crc.reset();
+        crc.update(io.duplicate().flip());
+        io.putInt((int) crc.getValue());
+        while (io.position() < HEADER_SIZE) io.put((byte) 0);
+        io.flip();
+        long pos = 0;
+        while (io.hasRemaining()) {
+            pos += channel.write(io, pos);
+        }
+    }
+
+    // Пишет содержимое io начиная с position и сдвигает конец журнала
+    private void writeFully(long position) throws IOException {
+        int len = io.remaining();
+        long pos = position;
+        while (io.hasRemaining()) {
+            pos += channel.write(io, pos);
+        }
+        writeOffset = position + len;
+        dirty = true;
+    }
+
+    private void readFully(long position) throws IOException {
+        long pos = position;
+        while (io.hasRemaining()) {
+            int n = channel.read(io, pos);
+            if (n < 0) throw new IOException("Неожиданный конец журнала " + file);
+            pos += n;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package leon.task.timeindb.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.service.BatchResult;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Метрики конвейера меток: буфер, фоновая запись, пакетная вставка и состояние БД (доступны через /actuator/metrics)
+@Component
+public class TickMetrics {
+
+    private final Counter dropped;            // Потерянные метки (вытеснение при переполнении, невозвращённые батчи)
+    private final Timer flushDuration;        // Длительность одного непустого цикла flushIfPossible
+    private final DistributionSummary batchSize; // Размер батчей, уходящих в БД
+    private final Timer insertLatency;        // Задержка insertBatch (с гистограммой для перцентилей)
+    private final Counter inserted;           // Вставленные строки по данным БД
+    private final Counter duplicates;         // Метки, уже бывшие в таблице
+    private final Counter dedupSkipped;       // Из них отсеянные по индексу до обращения к БД
+    private final Timer outageDuration;       // Длительность каждого отключения БД
+    private final Counter reconnectSuccess;   // Удачные попытки переподключения
+    private final Counter reconnectFailure;   // Неудачные попытки переподключения
+    private final Timer replayDuration;       // Длительность прохода параллельной дозаписи
+    private final Counter replayWritten;      // Метки, записанные параллельной дозаписью
+    private final Counter replayFailedPartitions; // Партиции, не записанные после всех попыток
+    private final Counter ingested;           // Метки, принятые через POST /ticks
+    private final Counter ingestRejected;     // Запросы POST /ticks, отклонённые с 429
+    private final Counter cacheHits;          // Чтения /ticks, обслуженные кэшем последних меток
+    private final Counter cacheMisses;        // Чтения /ticks, ушедшие в БД
+
+    private final AtomicInteger dbUp = new AtomicInteger(1); // 1 — БД доступна, 0 — офлайн-режим
+    private final AtomicLong downSinceNanos = new AtomicLong(); // Момент перехода в офлайн (System.nanoTime)
+
+    public TickMetrics(MeterRegistry registry, TickBuffer buffer, TickJournal journal) {
+        Gauge.builder("ticks.buffer.size", buffer, TickBuffer::size)
+                .description("Метки в буфере, ожидающие записи в БД")
+                .register(registry);
+        Gauge.builder("ticks.buffer.remaining", buffer, TickBuffer::remainingCapacity)
+                .description("Свободное место в буфере до начала вытеснения")
+                .register(registry);
+        Gauge.builder("ticks.buffer.capacity", buffer, TickBuffer::capacity)
+                .description("Ёмкость буфера (app.buffer-capacity)")
+                .register(registry);
+        Gauge.builder("ticks.journal.pending", journal, TickJournal::pending)
+                .description("Метки в журнале на диске, ожидающие записи в БД")
+                .register(registry);
+        Gauge.builder("ticks.db.up", dbUp, AtomicInteger::get)
+                .description("Доступность БД: 1 — запись идёт, 0 — офлайн-режим")
+                .register(registry);
+
+        dropped = Counter.builder("ticks.dropped")
+                .description("Потерянные метки")
+                .register(registry);
+        flushDuration = Timer.builder("ticks.flush.duration")
+                .description("Длительность цикла фоновой записи")
+                .register(registry);
+        batchSize = DistributionSummary.builder("ticks.flush.batch.size")
+                .description("Размер батча, отправленного в БД")
+                .publishPercentileHistogram()
+                .register(registry);
+        insertLatency = Timer.builder("ticks.insert.latency")
+                .description("Задержка записи одного батча")
+                .publishPercentileHistogram()
+                .register(registry);
+        inserted = Counter.builder("ticks.insert.rows")
+                .tag("result", "inserted")
+                .description("Строки, вставленные в БД")
+                .register(registry);
+        duplicates = Counter.builder("ticks.insert.rows")
+                .tag("result", "duplicate")
+                .description("Метки, отброшенные как дубли")
+                .register(registry);
+        dedupSkipped = Counter.builder("ticks.dedup.skipped")
+                .description("Повторные метки, отброшенные по индексу полноты без обращения к БД")
+                .register(registry);
+        outageDuration = Timer.builder("ticks.db.outage")
+                .description("Длительность отключений БД")
+                .register(registry);
+        reconnectSuccess = Counter.builder("ticks.db.reconnect.attempts")
+                .tag("result", "success")
+                .register(registry);
+        reconnectFailure = Counter.builder("ticks.db.reconnect.attempts")
+                .tag("result", "failure")
+                .register(registry);
+        replayDuration = Timer.builder("ticks.replay.duration")
+                .description("Длительность прохода параллельной дозаписи очереди")
+                .register(registry);
+        replayWritten = Counter.builder("ticks.replay.rows")
+                .description("Метки, записанные параллельной дозаписью")
+                .register(registry);
+        replayFailedPartitions = Counter.builder("ticks.replay.failed.partitions")
+                .description("Партиции дозаписи, возвращённые в очередь после всех попыток")
+                .register(registry);
+        ingested = Counter.builder("ticks.ingest.rows")
+                .description("Метки, принятые через POST /ticks")
+                .register(registry);
+        ingestRejected = Counter.builder("ticks.ingest.rejected")
+                .description("Запросы POST /ticks, отклонённые из-за заполненного буфера (429)")
+                .register(registry);
+        cacheHits = Counter.builder("ticks.cache.requests")
+                .tag("result", "hit")
+                .description("Чтения меток по результату обращения к кэшу последних меток")
+                .register(registry);
+        cacheMisses = Counter.builder("ticks.cache.requests")
+                .tag("result", "miss")
+                .description("Чтения меток по результату обращения к кэшу последних меток")
+                .register(registry);
+    }
+
+    public void dropped(long n) {
+        dropped.increment(n);
+    }
+
+    public void flushed(long nanos) {
+        flushDuration.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Результат одного insertBatch: размер батча, задержка и счетчики вставок/дублей
+    public void batchWritten(int size, long nanos, BatchResult result) {
+        batchSize.record(size);
+        insertLatency.record(nanos, TimeUnit.NANOSECONDS);
+        if (result != null) {
+            inserted.increment(result.getInserted());
+            duplicates.increment(result.getDuplicates());
+        }
+    }
+
+    // Метки батча, отсеянные как уже записанные до обращения к БД (входят и в ticks.insert.rows{result=duplicate})
+    public void dedupSkipped(int n) {
+        dedupSkipped.increment(n);
+    }
+
+    // Переход в офлайн-режим: запоминаем момент для таймера отключения
+    public void dbDown() {
+        if (dbUp.getAndSet(0) == 1) {
+            downSinceNanos.set(System.nanoTime());
+        }
+    }
+
+    // Восстановление БД: фиксируем длительность отключения
+    public void dbRestored() {
+        if (dbUp.getAndSet(1) == 0) {
+            outageDuration.record(System.nanoTime() - downSinceNanos.get(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void replayed(long nanos, int written, int failedPartitions) {
+        replayDuration.record(nanos, TimeUnit.NANOSECONDS);
+        replayWritten.increment(written);
+        replayFailedPartitions.increment(failedPartitions);
+    }
+
+    public void reconnectAttempt(boolean success) {
+        (success ? reconnectSuccess : reconnectFailure).increment();
+    }
+
+    public void ingested(long n, boolean rejected) {
+        ingested.increment(n);
+        if (rejected) ingestRejected.increment();
+    }
+
+    public void cacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+}
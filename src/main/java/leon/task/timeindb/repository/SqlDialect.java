@@ -0,0 +1,19 @@
+package leon.task.timeindb.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Диалект SQL, от которого зависит синтаксис "вставки без дублей"
+public enum SqlDialect {
+    POSTGRES,
+    H2;
+
+    // Определение диалекта по метаданным соединения
+    public static SqlDialect detect(JdbcTemplate jdbc) {
+        String product = jdbc.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (product != null && product.toLowerCase().contains("h2")) {
+            return H2;
+        }
+        return POSTGRES; // Всё остальное считаем PostgreSQL — это основная БД приложения
+    }
+}
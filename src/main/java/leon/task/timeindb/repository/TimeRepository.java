@@ -1,7 +1,41 @@
 package leon.task.timeindb.repository;
 
 import leon.task.timeindb.entity.TimeEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface TimeRepository extends JpaRepository<TimeEntity, Long> {
+
+    // Чтение возвращает только created_at: суррогатного id нет в секционированной схеме (профиль partitioned).
+    // Все выборки — по источнику по умолчанию (TimeEntity.DEFAULT_SOURCE): метки других источников только пишутся
+
+    @Override
+    @Query("select count(e.createdAt) from TimeEntity e")
+    long count();
+
+    // Страница меток из диапазона [from, to) по возрастанию времени (использует уникальный индекс (source, created_at))
+    @Query("select e.createdAt from TimeEntity e where e.source = 0 and e.createdAt >= :from and e.createdAt < :to order by e.createdAt")
+    List<Instant> findRange(@Param("from") Instant from, @Param("to") Instant to, Pageable page);
+
+    // Keyset-страница: метки строго после курсора after и до to, без OFFSET
+    @Query("select e.createdAt from TimeEntity e where e.source = 0 and e.createdAt > :after and e.createdAt < :to order by e.createdAt")
+    List<Instant> findAfter(@Param("after") Instant after, @Param("to") Instant to, Pageable page);
+
+    // Потоковое чтение диапазона: строки читаются курсором порциями по fetch size, а не целиком в память;
+    // скаляры не попадают в persistence context, поэтому память не растёт
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select e.createdAt from TimeEntity e where e.source = 0 and e.createdAt >= :from and e.createdAt < :to order by e.createdAt")
+    Stream<Instant> streamRange(@Param("from") Instant from, @Param("to") Instant to);
+
+    // Самые новые метки по убыванию времени (загрузка кэша последних меток, /ticks/latest)
+    @Query("select e.createdAt from TimeEntity e where e.source = 0 order by e.createdAt desc")
+    List<Instant> findLatest(Pageable page);
 }
@@ -0,0 +1,101 @@
+package leon.task.timeindb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Регулятор фоновой записи: подбирает размер батча и лимит меток на цикл по задержке коммита и размеру очереди.
+ *
+ * - Коммит быстрее половины целевой задержки и очередь больше батча — батч удваивается (до max-batch).
+ * - Коммит медленнее целевой задержки или ошибка записи — батч уменьшается вдвое (до min-batch).
+ * - Очередь выше catch-up-threshold — режим догонки: цикл пишет без лимита, пока очередь не опустится до steady-backlog.
+ *
+ * Вызывается только из потока записи (под flushLock в TimeService).
+ */
+@Component
+@Slf4j
+public class AdaptiveFlushController {
+
+    @Value("${app.flush.min-batch:100}")
+    private int minBatch = 100;              // Нижняя граница размера батча
+    @Value("${app.flush.max-batch:10000}")
+    private int maxBatch = 10000;            // Верхняя граница размера батча
+    @Value("${app.flush.initial-batch:500}")
+    private int initialBatch = 500;          // Стартовый размер батча
+    @Value("${app.flush.batches-per-cycle:4}")
+    private int batchesPerCycle = 4;         // Лимит меток на цикл в обычном режиме — столько батчей текущего размера
+    @Value("${app.flush.target-latency-ms:200}")
+    private long targetLatencyMs = 200;      // Целевая задержка коммита одного батча
+    @Value("${app.flush.catch-up-threshold:5000}")
+    private long catchUpThreshold = 5000;    // Очередь, при которой включается режим догонки
+    @Value("${app.flush.steady-backlog:500}")
+    private long steadyBacklog = 500;        // Очередь, при которой режим догонки выключается
+
+    private volatile int batchSize = initialBatch;
+    private volatile boolean catchUp;
+
+    @PostConstruct
+    void init() {
+        if (minBatch <= 0 || maxBatch < minBatch) {
+            throw new IllegalStateException("app.flush: требуется 0 < min-batch <= max-batch, сейчас "
+                    + minBatch + ".." + maxBatch);
+        }
+        batchSize = clamp(initialBatch);
+        log.info("Адаптивная запись: батч {} (от {} до {}), {} батчей за цикл, целевая задержка {} мс, "
+                        + "догонка при очереди от {} до {}",
+                batchSize, minBatch, maxBatch, batchesPerCycle, targetLatencyMs, catchUpThreshold, steadyBacklog);
+    }
+
+    // Размер следующего батча
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public boolean isCatchUp() {
+        return catchUp;
+    }
+
+    // Учёт успешно записанного батча: подстройка размера по задержке коммита
+    public void onBatch(int size, long nanos, long backlog) {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int before = batchSize;
+        if (latencyMs > targetLatencyMs) {
+            batchSize = clamp(before / 2); // БД не успевает — уменьшаем нагрузку
+        } else if (latencyMs * 2 < targetLatencyMs && size >= before && backlog > before) {
+            batchSize = clamp(before * 2); // Запас по задержке и есть очередь — увеличиваем батч
+        }
+        if (batchSize != before) {
+            log.debug("Размер батча {} -> {} (коммит {} мс, очередь {})", before, batchSize, latencyMs, backlog);
+        }
+    }
+
+    // Ошибка записи: уменьшаем батч и выходим из режима догонки
+    public void onFailure() {
+        batchSize = clamp(batchSize / 2);
+        if (catchUp) {
+            catchUp = false;
+            log.info("Режим догонки прерван ошибкой записи, батч уменьшен до {}", batchSize);
+        }
+    }
+
+    // Продолжать ли текущий цикл записи после drained меток при оставшейся очереди backlog
+    public boolean continueCycle(long drained, long backlog) {
+        if (!catchUp && backlog >= catchUpThreshold) {
+            catchUp = true;
+            log.info("Включён режим догонки: очередь {}, батч {} (до {})", backlog, batchSize, maxBatch);
+        } else if (catchUp && backlog <= steadyBacklog) {
+            catchUp = false;
+            log.info("Режим догонки завершён: очередь {}, батч {}", backlog, batchSize);
+        }
+        if (catchUp) return true; // В режиме догонки цикл не ограничен
+        return drained < (long) batchSize * batchesPerCycle;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minBatch, Math.min(maxBatch, size));
+    }
+}
@@ -0,0 +1,156 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.metrics.TickMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Параллельная дозапись накопленной очереди после восстановления БД.
+ *
+ * Очередь сортируется и делится на непересекающиеся упорядоченные по времени партиции, которые пишутся
+ * одновременно на отдельном ограниченном пуле — каждая в своей транзакции (insertBatch) и со своими повторами.
+ * Метки неудачных партиций возвращаются вызывающему по возрастанию времени, чтобы их можно было вернуть
+ * в голову буфера без нарушения порядка.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BacklogReplayService {
+
+    private final BatchWriterService writer;
+    private final TickMetrics metrics; // Каждая партиция учитывается в задержке и счётчиках вставки, как батч фоновой записи
+
+    @Value("${app.replay.threads:3}")
+    private int threads = 3;                  // Потоков записи; оставляем соединения пула Hikari для фоновой записи и чтения
+    @Value("${app.replay.threshold:20000}")
+    private long threshold = 20000;           // Очередь, начиная с которой дозапись идёт параллельно
+    @Value("${app.replay.partition-size:10000}")
+    private int partitionSize = 10000;        // Меток в одной партиции (= одна транзакция)
+    @Value("${app.replay.max-ticks-per-run:200000}")
+    private int maxTicksPerRun = 200000;      // Меток за один проход дозаписи
+    @Value("${app.replay.max-attempts:3}")
+    private int maxAttempts = 3;              // Попыток записи одной партиции
+    @Value("${app.replay.retry-delay-ms:200}")
+    private long retryDelayMs = 200;          // Пауза перед повтором (растёт с номером попытки)
+
+    private ThreadPoolExecutor executor;      // null — параллельная дозапись выключена (threads = 0)
+
+    @PostConstruct
+    void init() {
+        if (threads <= 0) return;
+        // Очередь задач ограничена: вызывающий поток сам ждёт результатов, лишние партиции в памяти не копятся
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxTicksPerRun / partitionSize + 1)),
+                new CustomizableThreadFactory("replay-"));
+        log.info("Параллельная дозапись: потоков {}, порог очереди {}, партиция {}, за проход до {}, попыток {}",
+                threads, threshold, partitionSize, maxTicksPerRun, maxAttempts);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    public long threshold() {
+        return threshold;
+    }
+
+    public int maxTicksPerRun() {
+        return maxTicksPerRun;
+    }
+
+    // Параллельная запись ticks[0..n): массив сортируется на месте
+    public ReplayResult replay(long[] ticks, int n) {
+        Arrays.sort(ticks, 0, n); // Партиции становятся непересекающимися интервалами времени
+        int partitions = (n + partitionSize - 1) / partitionSize;
+        List<Future<Boolean>> futures = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int from = p * partitionSize;
+            int to = Math.min(n, from + partitionSize);
+            futures.add(executor.submit(() -> writePartition(ticks, from, to)));
+        }
+
+        int written = 0;
+        int failedPartitions = 0;
+        int failedCount = 0;
+        long[] failed = new long[0];
+        for (int p = 0; p < partitions; p++) {
+            int from = p * partitionSize;
+            int to = Math.min(n, from + partitionSize);
+            if (await(futures.get(p))) {
+                written += to - from;
+                continue;
+            }
+            // Партиции обходятся по порядку, поэтому неудачные метки остаются отсортированными
+            if (failed.length < failedCount + (to - from)) failed = Arrays.copyOf(failed, n);
+            System.arraycopy(ticks, from, failed, failedCount, to - from);
+            failedCount += to - from;
+            failedPartitions++;
+        }
+        if (failedPartitions > 0) {
+            log.warn("Дозапись: {} из {} партиций не записаны ({} меток)", failedPartitions, partitions, failedCount);
+        }
+        return new ReplayResult(written, failedPartitions, failed, failedCount);
+    }
+
+    // Запись одной партиции в отдельной транзакции с повторами
+    private boolean writePartition(long[] ticks, int from, int to) {
+        List<Instant> batch = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            batch.add(Instant.ofEpochSecond(ticks[i]));
+        }
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                long t0 = System.nanoTime();
+                BatchResult result = writer.insertBatch(batch);
+                metrics.batchWritten(batch.size(), System.nanoTime() - t0, result);
+                return true;
+            } catch (RuntimeException e) {
+                log.warn("Партиция [{} .. {}]: попытка {} из {} не удалась: {}",
+                        batch.get(0), batch.get(batch.size() - 1), attempt, maxAttempts, e.getMessage());
+                if (attempt < maxAttempts && !sleep(retryDelayMs * attempt)) return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean await(Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package leon.task.timeindb.service;
+
+import lombok.Value;
+
+// Итог записи одного батча: сколько строк реально вставлено и сколько оказалось дублями
+@Value
+public class BatchResult {
+
+    public static final BatchResult EMPTY = new BatchResult(0, 0);
+
+    int inserted;   // Количество новых строк по данным БД
+    int duplicates; // Количество меток, которые уже были в таблице (или повторялись внутри батча)
+
+    public int total() {
+        return inserted + duplicates; // Общее количество обработанных меток
+    }
+}
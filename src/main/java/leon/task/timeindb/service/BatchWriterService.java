@@ -1,15 +1,28 @@
 package leon.task.timeindb.service;
 
+import leon.task.timeindb.buffer.SourceTick;
 import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.repository.SqlDialect;
 import leon.task.timeindb.repository.TimeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -17,27 +30,189 @@ import java.util.List;
 public class BatchWriterService {
 
     private final TimeRepository repo;
+    private final JdbcTemplate jdbc;
+    private final CopyBatchWriter copyWriter;
+    private final TickRollupService rollup;
+    private final ApplicationEventPublisher events;
+    private final TickIndexService index;
+    private final TickMetrics metrics;
+
+    // Режим записи: многострочный JDBC (application.yaml) или построчный JPA — он же запасной, если свойство не задано
+    @Value("${app.writer.mode:jpa}")
+    private WriteMode mode = WriteMode.JPA;
+
+    // Сколько строк уходит в один многострочный INSERT/MERGE (ограничено лимитом параметров драйвера)
+    @Value("${app.writer.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    // С какого размера батча (после удаления повторов) в PostgreSQL используется COPY через staging-таблицу.
+    // Не больше партиции дозаписи и app.flush.max-batch, иначе COPY не выбирается ни для одного батча
+    @Value("${app.writer.copy-threshold:5000}")
+    private int copyThreshold = 5000;
+
+    private volatile SqlDialect dialect; // Определяется лениво при первой JDBC-записи
 
     @Transactional(noRollbackFor = DataIntegrityViolationException.class)
-    public void insertBatch(List<Instant> batch) {
-        int inserted = 0; // Счетчик успешно вставленных записей
-        int duplicates = 0;   // Счетчик дубликатов (нарушение уникальности)
+    public BatchResult insertBatch(List<Instant> batch) {
+        if (batch.isEmpty()) return BatchResult.EMPTY;
+
+        // Метки, уже записанные по данным индекса (например, повторно возвращённый в буфер батч), в БД не уходят
+        List<Instant> fresh = index.withoutCommitted(batch);
+        int skipped = batch.size() - fresh.size();
+        if (skipped > 0) {
+            metrics.dedupSkipped(skipped);
+            if (fresh.isEmpty()) {
+                log.debug("Батч пропущен: все {} меток уже записаны", batch.size());
+                return new BatchResult(0, batch.size());
+            }
+        }
+
+        List<Instant> inserted = mode == WriteMode.JDBC ? insertSetBased(fresh) : insertPerRow(fresh);
+        rollup.apply(dialect(), inserted); // Счётчики статистики — в той же транзакции, только по новым меткам
+        if (!inserted.isEmpty()) {
+            events.publishEvent(new TicksInsertedEvent(inserted)); // Индексы в памяти обновятся после коммита
+        }
+        BatchResult result = new BatchResult(inserted.size(), batch.size() - inserted.size());
+        log.debug("Батч записан: всего={}, вставлено={}, дублей={} (из них отсеяно до БД: {})",
+                batch.size(), result.getInserted(), result.getDuplicates(), skipped);
+        return result;
+    }
+
+    // Метки других источников (упакованные SourceTick, упорядочены и без повторов): многострочная вставка
+    // (source, created_at) в любом режиме записи. Фильтр по индексу, статистика и события не применяются —
+    // они ведутся по источнику по умолчанию. Дубли отбрасывает БД по ключу (source, created_at)
+    @Transactional
+    public BatchResult insertSourceBatch(long[] packed, int n) {
+        if (n == 0) return BatchResult.EMPTY;
+        SqlDialect d = dialect();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        int inserted = 0;
+        for (int from = 0; from < n; from += chunkSize) {
+            int rows = Math.min(chunkSize, n - from);
+            int offset = from;
+            inserted += jdbc.update(insertSourcesSql(d, rows), ps -> bindSources(ps, packed, offset, rows, utc));
+        }
+        log.debug("Батч источников записан: всего={}, вставлено={}", n, inserted);
+        return new BatchResult(inserted, n - inserted);
+    }
+
+    // Исходный путь: по одному repo.save() на метку, дубли ловятся через исключение; возвращает вставленные метки
+    private List<Instant> insertPerRow(List<Instant> batch) {
+        List<Instant> inserted = new ArrayList<>(batch.size()); // Успешно вставленные метки
 
         for (Instant ts : batch) { // Итерация по всем элементам переданного списка
             try {
                 // Создание новой сущности с временной меткой и сохранение в БД
                 // null - ID будет сгенерирован автоматически
-                repo.save(new TimeEntity(null, ts));
-                inserted++; // Увеличение счетчика успешных вставок
+                repo.save(new TimeEntity(null, TimeEntity.DEFAULT_SOURCE, ts));
+                inserted.add(ts); // Учет успешной вставки
 
 
             } catch (DataIntegrityViolationException e) {
                 // Обработка нарушения целостности данных (дубликат уникального поля)
-                // Увеличение счетчика дубликатов
-                duplicates++;
+                // Дубликат не попадает в список вставленных
             }
         }
-        log.debug("Батч записан: всего={}, вставлено={}, дублей={}", batch.size(), inserted, duplicates);
+        return inserted;
+    }
+
+    // Многострочная вставка: один запрос на chunkSize меток, дубли отбрасывает сама БД; возвращает вставленные метки
+    private List<Instant> insertSetBased(List<Instant> batch) {
+        // Сортировка и удаление повторов внутри батча: MERGE в H2 не переносит одинаковые ключи в одном источнике
+        List<Instant> unique = batch.stream().sorted().distinct().collect(Collectors.toList());
+        SqlDialect d = dialect();
+        if (useCopy(d, unique.size())) {
+            return copy(unique);
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // Та же зона, что hibernate.jdbc.time_zone
+
+        List<Instant> inserted = new ArrayList<>(unique.size());
+        for (int from = 0; from < unique.size(); from += chunkSize) {
+            List<Instant> chunk = unique.subList(from, Math.min(from + chunkSize, unique.size()));
+            // Реально вставленные строки возвращает БД: конфликтующие строки в результат не входят
+            jdbc.query(insertIgnoreSql(d, chunk.size()), ps -> bind(ps, chunk, utc),
+                    rs -> { inserted.add(rs.getTimestamp(1, utc).toInstant()); });
+        }
+        return inserted;
+    }
+
+    // COPY есть только в PostgreSQL; H2 и небольшие батчи идут многострочным INSERT/MERGE
+    boolean useCopy(SqlDialect d, int rows) {
+        return d == SqlDialect.POSTGRES && rows >= copyThreshold;
     }
-}
 
+    private List<Instant> copy(List<Instant> unique) {
+        try {
+            return copyWriter.copy(unique);
+        } catch (SQLException e) {
+            throw jdbc.getExceptionTranslator().translate("COPY " + CopyBatchWriter.STAGING_TABLE, null, e);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, List<Instant> chunk, Calendar utc) throws SQLException {
+        for (int i = 0; i < chunk.size(); i++) {
+            ps.setTimestamp(i + 1, Timestamp.from(chunk.get(i)), utc);
+        }
+    }
+
+    // SQL для вставки rows строк источника по умолчанию (source DEFAULT 0) с игнорированием уже существующих меток;
+    // возвращает created_at вставленных строк
+    static String insertIgnoreSql(SqlDialect dialect, int rows) {
+        StringBuilder sql = new StringBuilder(96 + rows * 24);
+        if (dialect == SqlDialect.POSTGRES) {
+            sql.append("INSERT INTO ").append(TimeEntity.TABLE).append(" (created_at) VALUES ");
+            appendRows(sql, rows, "(?)");
+            sql.append(" ON CONFLICT (source, created_at) DO NOTHING RETURNING created_at");
+        } else {
+            // В H2 нет RETURNING: вставленные строки отдаёт delta-таблица FINAL TABLE
+            sql.append("SELECT created_at FROM FINAL TABLE (MERGE INTO ").append(TimeEntity.TABLE).append(" t USING (VALUES ");
+            appendRows(sql, rows, "(CAST(? AS TIMESTAMP))");
+            sql.append(") s(created_at) ON t.source = ").append(TimeEntity.DEFAULT_SOURCE).append(" AND t.created_at = s.created_at")
+                    .append(" WHEN NOT MATCHED THEN INSERT (created_at) VALUES (s.created_at))");
+        }
+        return sql.toString();
+    }
+
+    // SQL для вставки rows пар (source, created_at) с игнорированием существующих; update count — вставленные строки
+    static String insertSourcesSql(SqlDialect dialect, int rows) {
+        StringBuilder sql = new StringBuilder(128 + rows * 48);
+        if (dialect == SqlDialect.POSTGRES) {
+            sql.append("INSERT INTO ").append(TimeEntity.TABLE).append(" (source, created_at) VALUES ");
+            appendRows(sql, rows, "(?, ?)");
+            sql.append(" ON CONFLICT (source, created_at) DO NOTHING");
+        } else {
+            sql.append("MERGE INTO ").append(TimeEntity.TABLE).append(" t USING (VALUES ");
+            appendRows(sql, rows, "(CAST(? AS INTEGER), CAST(? AS TIMESTAMP))");
+            sql.append(") s(source, created_at) ON t.source = s.source AND t.created_at = s.created_at")
+                    .append(" WHEN NOT MATCHED THEN INSERT (source, created_at) VALUES (s.source, s.created_at)");
+        }
+        return sql.toString();
+    }
+
+    private static void bindSources(PreparedStatement ps, long[] packed, int from, int rows, Calendar utc)
+            throws SQLException {
+        for (int i = 0; i < rows; i++) {
+            long v = packed[from + i];
+            ps.setInt(2 * i + 1, SourceTick.source(v));
+            ps.setTimestamp(2 * i + 2, Timestamp.from(Instant.ofEpochSecond(SourceTick.second(v))), utc);
+        }
+    }
+
+    private static void appendRows(StringBuilder sql, int rows, String row) {
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(row);
+        }
+    }
+
+    private SqlDialect dialect() {
+        SqlDialect d = dialect;
+        if (d == null) {
+            d = SqlDialect.detect(jdbc);
+            dialect = d;
+            log.info("Пакетная запись: режим={}, диалект={}, строк в запросе={}, COPY от {} строк{}",
+                    mode, d, chunkSize, copyThreshold, d == SqlDialect.POSTGRES ? "" : " (недоступен)");
+        }
+        return d;
+    }
+}
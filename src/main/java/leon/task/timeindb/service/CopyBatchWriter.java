@@ -0,0 +1,116 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.entity.TimeEntity;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/*
+ * Загрузка больших батчей в PostgreSQL через COPY: метки потоком уходят в staging-таблицу в формате CSV,
+ * затем одним INSERT ... SELECT ... ON CONFLICT DO NOTHING переносятся в основную таблицу.
+ *
+ * Staging — временная таблица сессии (в WAL не пишется, как и UNLOGGED), поэтому параллельные транзакции
+ * дозаписи не мешают друг другу; ON COMMIT DELETE ROWS очищает её при коммите.
+ * Работает на соединении текущей транзакции — вызывается из BatchWriterService.insertBatch.
+ */
+@Component
+@RequiredArgsConstructor
+public class CopyBatchWriter {
+
+    static final String STAGING_TABLE = "tick_staging";
+    private static final int COPY_CHUNK = 64 * 1024; // Байт за один вызов writeToCopy
+
+    private final DataSource dataSource;
+
+    // Возвращает реально вставленные метки (в произвольном порядке)
+    public List<Instant> copy(List<Instant> ticks) throws SQLException {
+        Connection con = DataSourceUtils.getConnection(dataSource); // Соединение, привязанное к текущей транзакции
+        try {
+            try (Statement st = con.createStatement()) {
+                st.execute("CREATE TEMP TABLE IF NOT EXISTS " + STAGING_TABLE
+                        + " (created_at timestamp NOT NULL) ON COMMIT DELETE ROWS");
+            }
+            copyIn(con.unwrap(PGConnection.class), ticks);
+            List<Instant> inserted = new ArrayList<>(ticks.size());
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            try (Statement st = con.createStatement();
+                 ResultSet rs = st.executeQuery("INSERT INTO " + TimeEntity.TABLE + " (created_at) SELECT created_at FROM "
+                         + STAGING_TABLE + " ON CONFLICT (source, created_at) DO NOTHING RETURNING created_at")) {
+                while (rs.next()) {
+                    inserted.add(rs.getTimestamp(1, utc).toInstant());
+                }
+            }
+            return inserted;
+        } finally {
+            DataSourceUtils.releaseConnection(con, dataSource);
+        }
+    }
+
+    // Потоковая передача меток порциями по COPY_CHUNK байт — весь CSV в памяти не собирается
+    private static void copyIn(PGConnection pg, List<Instant> ticks) throws SQLException {
+        CopyIn copy = pg.getCopyAPI().copyIn("COPY " + STAGING_TABLE + " (created_at) FROM STDIN (FORMAT csv)");
+        try {
+            byte[] chunk = new byte[COPY_CHUNK];
+            int pos = 0;
+            for (Instant ts : ticks) {
+                if (pos > COPY_CHUNK - MAX_ROW_BYTES) {
+                    copy.writeToCopy(chunk, 0, pos);
+                    pos = 0;
+                }
+                pos = appendCsvRow(chunk, pos, ts);
+            }
+            if (pos > 0) copy.writeToCopy(chunk, 0, pos);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) copy.cancelCopy(); // Ошибка посреди передачи — COPY отменяется, транзакция откатится
+        }
+    }
+
+    static final int MAX_ROW_BYTES = 32; // "yyyy-MM-dd HH:mm:ss.ffffff\n" с запасом
+
+    // Строка CSV "yyyy-MM-dd HH:mm:ss[.ffffff]\n" в UTC (колонка timestamp хранит UTC, как hibernate.jdbc.time_zone)
+    static int appendCsvRow(byte[] buf, int pos, Instant ts) {
+        LocalDateTime t = LocalDateTime.ofEpochSecond(ts.getEpochSecond(), 0, ZoneOffset.UTC);
+        pos = digits(buf, pos, t.getYear(), 4);
+        buf[pos++] = '-';
+        pos = digits(buf, pos, t.getMonthValue(), 2);
+        buf[pos++] = '-';
+        pos = digits(buf, pos, t.getDayOfMonth(), 2);
+        buf[pos++] = ' ';
+        pos = digits(buf, pos, t.getHour(), 2);
+        buf[pos++] = ':';
+        pos = digits(buf, pos, t.getMinute(), 2);
+        buf[pos++] = ':';
+        pos = digits(buf, pos, t.getSecond(), 2);
+        int micros = ts.getNano() / 1000; // PostgreSQL хранит микросекунды
+        if (micros != 0) {
+            buf[pos++] = '.';
+            pos = digits(buf, pos, micros, 6);
+        }
+        buf[pos++] = '\n';
+        return pos;
+    }
+
+    private static int digits(byte[] buf, int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+}
@@ -0,0 +1,216 @@
+package leon.task.timeindb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Автомат доступности БД для записи меток (circuit breaker).
+ *
+ * - CLOSED — запись идёт штатно.
+ * - OPEN — запись остановлена после ошибки; БД проверяется лёгким Connection.isValid() на отдельном соединении
+ *   с экспоненциальной паузой и разбросом (backoff-initial-ms * 2^n, не больше backoff-max-ms, случайно от половины
+ *   до полной паузы), чтобы несколько экземпляров не обращались к восстановившейся БД одновременно.
+ * - HALF_OPEN — проверка прошла; запись идёт пробными батчами не больше half-open-batch меток.
+ *   После half-open-successes удачных батчей — CLOSED, при первой ошибке — снова OPEN со следующей паузой.
+ *
+ * Проверочное соединение берётся один раз после отключения и держится, пока проверки проходят;
+ * при восстановлении записи оно возвращается в пул.
+ */
+@Component
+@Slf4j
+public class DbCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final DataSource dataSource;
+
+    @Value("${app.db.probe-timeout-seconds:2}")
+    private int probeTimeoutSeconds = 2;     // Ожидание ответа Connection.isValid()
+    @Value("${app.db.backoff-initial-ms:500}")
+    private long backoffInitialMs = 500;     // Пауза перед первой проверкой после отключения
+    @Value("${app.db.backoff-max-ms:30000}")
+    private long backoffMaxMs = 30000;       // Верхняя граница паузы между проверками
+    @Value("${app.db.half-open-batch:100}")
+    private int halfOpenBatch = 100;         // Размер пробного батча после удачной проверки
+    @Value("${app.db.half-open-successes:3}")
+    private int halfOpenSuccesses = 3;       // Удачных пробных батчей до возврата к штатной записи
+
+    private volatile State state = State.CLOSED;
+    private volatile Instant since = Instant.now(); // Момент последней смены состояния
+    private volatile String lastError;
+    private int failures;          // Подряд неудачных попыток (ошибки записи и проверки) с момента отключения
+    private int trials;            // Удачных пробных батчей в HALF_OPEN
+    private long nextProbeAtMs;    // Не раньше этого момента следующая проверка (System.currentTimeMillis)
+    private Connection probeConnection; // Отдельное соединение для проверок (только в OPEN)
+    private boolean probing;       // Идёт проверка: соединение у проверяющего потока, вне probeConnection
+
+    public DbCircuitBreaker(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    void init() {
+        if (backoffInitialMs <= 0 || backoffMaxMs < backoffInitialMs || halfOpenBatch <= 0 || halfOpenSuccesses <= 0) {
+            throw new IllegalStateException("app.db: требуется 0 < backoff-initial-ms <= backoff-max-ms, "
+                    + "half-open-batch > 0 и half-open-successes > 0");
+        }
+        log.info("Доступность БД: проверка isValid() ({} с), пауза {}..{} мс, пробная запись {} батчами по {} меток",
+                probeTimeoutSeconds, backoffInitialMs, backoffMaxMs, halfOpenSuccesses, halfOpenBatch);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    // Запись разрешена: штатно или пробными батчами
+    public boolean allowsWrites() {
+        return state != State.OPEN;
+    }
+
+    public boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    // Ограничение размера батча: в HALF_OPEN — пробный батч, иначе без ограничения
+    public int limitBatch(int batchSize) {
+        return state == State.HALF_OPEN ? Math.min(batchSize, halfOpenBatch) : batchSize;
+    }
+
+    public String lastError() {
+        return lastError;
+    }
+
+    public Instant since() {
+        return since;
+    }
+
+    public synchronized int failures() {
+        return failures;
+    }
+
+    // Сколько осталось до следующей проверки (0 — можно проверять или БД не в OPEN)
+    public synchronized long nextProbeInMs(long nowMs) {
+        return state == State.OPEN ? Math.max(0, nextProbeAtMs - nowMs) : 0;
+    }
+
+    // Ошибка записи: переход в OPEN (или продление паузы); true, если запись до этого была разрешена
+    public synchronized boolean onWriteFailure(long nowMs, String error) {
+        boolean opened = state != State.OPEN;
+        lastError = error;
+        scheduleProbe(nowMs);
+        if (opened) transition(State.OPEN);
+        return opened;
+    }
+
+    // Удачный батч; true, если пробная запись завершена и автомат вернулся в CLOSED
+    public synchronized boolean onWriteSuccess() {
+        if (state != State.HALF_OPEN) return false;
+        if (++trials < halfOpenSuccesses) return false;
+        close();
+        return true;
+    }
+
+    // Пробовать нечего (очередь пуста) — удачной проверки достаточно; true, если автомат вернулся в CLOSED
+    public synchronized boolean onIdle() {
+        if (state != State.HALF_OPEN) return false;
+        close();
+        return true;
+    }
+
+    // Пора ли проверять БД (только в OPEN и после паузы)
+    public synchronized boolean probeDue(long nowMs) {
+        return state == State.OPEN && nowMs >= nextProbeAtMs;
+    }
+
+    // Лёгкая проверка БД; при успехе — HALF_OPEN, при неудаче — следующая пауза длиннее.
+    // getConnection()/isValid() идут вне блокировки (до probe-timeout-seconds и таймаута пула), чтобы не задерживать
+    // health (failures, nextProbeInMs) и потоки записи (onWriteFailure); результат применяется коротким переходом
+    public boolean probe(long nowMs) {
+        Connection connection;
+        synchronized (this) {
+            if (state != State.OPEN) return true;
+            if (probing) return false; // Проверку уже ведёт другой поток
+            probing = true;
+            connection = probeConnection;
+            probeConnection = null;
+        }
+        String error = null;
+        try {
+            if (connection == null) connection = dataSource.getConnection();
+            if (!connection.isValid(probeTimeoutSeconds)) error = "соединение не прошло проверку isValid()";
+        } catch (SQLException | RuntimeException e) {
+            error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        }
+        if (error != null) {
+            closeQuietly(connection); // Сломанное соединение не восстановится — в следующий раз берётся новое
+            connection = null;
+        }
+        synchronized (this) {
+            probing = false;
+            if (error == null) {
+                probeConnection = connection;
+                trials = 0;
+                transition(State.HALF_OPEN);
+                return true;
+            }
+            lastError = error;
+            scheduleProbe(nowMs);
+            return false;
+        }
+    }
+
+    // Пауза перед следующей проверкой: экспоненциальная по числу неудач, случайно от половины до полной
+    long backoffMs(int failures) {
+        long max = backoffInitialMs << Math.min(failures - 1, 30);
+        if (max <= 0 || max > backoffMaxMs) max = backoffMaxMs;
+        long half = max / 2;
+        return half + ThreadLocalRandom.current().nextLong(max - half + 1);
+    }
+
+    private void scheduleProbe(long nowMs) {
+        failures++;
+        nextProbeAtMs = nowMs + backoffMs(failures);
+    }
+
+    private void close() {
+        failures = 0;
+        trials = 0;
+        lastError = null;
+        releaseProbeConnection();
+        transition(State.CLOSED);
+    }
+
+    private void transition(State next) {
+        log.debug("Доступность БД: {} -> {}", state, next);
+        state = next;
+        since = Instant.now();
+    }
+
+    private void releaseProbeConnection() {
+        closeQuietly(probeConnection);
+        probeConnection = null;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Не удалось закрыть проверочное соединение: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void onShutdown() {
+        releaseProbeConnection();
+    }
+}
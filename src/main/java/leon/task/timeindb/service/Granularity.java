@@ -0,0 +1,40 @@
+package leon.task.timeindb.service;
+
+import java.util.Locale;
+
+// Размер интервала статистики; DAY хранится не отдельно, а собирается из часовых интервалов
+public enum Granularity {
+    MINUTE(60),
+    HOUR(3600),
+    DAY(86400);
+
+    private final long seconds;
+
+    Granularity(long seconds) {
+        this.seconds = seconds;
+    }
+
+    public long seconds() {
+        return seconds;
+    }
+
+    // Интервалы, которые хранятся в таблице tick_rollup
+    public boolean isStored() {
+        return this != DAY;
+    }
+
+    // Из каких хранимых интервалов собирается этот
+    public Granularity source() {
+        return isStored() ? this : HOUR;
+    }
+
+    // Начало интервала, содержащего epochSecond
+    public long floor(long epochSecond) {
+        return Math.floorDiv(epochSecond, seconds) * seconds;
+    }
+
+    // Разбор параметра запроса без учёта регистра: minute, hour, day
+    public static Granularity parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,17 @@
+package leon.task.timeindb.service;
+
+import lombok.Value;
+
+// Итог параллельной дозаписи очереди: записанные метки и метки из партиций, которые не удалось записать
+@Value
+public class ReplayResult {
+
+    int written;          // Метки из успешно записанных партиций
+    int failedPartitions; // Партиции, не записанные после всех попыток
+    long[] failed;        // Метки неудачных партиций по возрастанию времени (first failedCount элементов)
+    int failedCount;
+
+    public boolean isComplete() {
+        return failedPartitions == 0;
+    }
+}
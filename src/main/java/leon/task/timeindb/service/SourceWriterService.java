@@ -0,0 +1,161 @@
+package leon.task.timeindb.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import leon.task.timeindb.buffer.SourceTick;
+import leon.task.timeindb.buffer.StripedTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.metrics.TickMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Приём и запись меток других источников (POST /ticks?source=N, N != 0).
+ *
+ * Метки упаковываются (SourceTick) в полосы StripedTickBuffer по хешу источника. У каждой полосы свой поток записи:
+ * он забирает до batch-size меток, сортирует их по (source, created_at) и пишет одним insertSourceBatch
+ * в своей транзакции. Полосы не делят ни блокировку буфера, ни поток записи, поэтому пропускная способность растёт
+ * с числом ядер и соединений пула, а не упирается в один замок очереди и один поток фоновой записи.
+ *
+ * Запись идёт только при закрытом DbCircuitBreaker: ошибка открывает его, восстановление проверяет TimeService.
+ * Журнала на диске у источников нет — при отказе БД метки копятся в полосе, приём отвечает 429 по заполнению.
+ */
+@Service
+@Slf4j
+public class SourceWriterService {
+
+    private final BatchWriterService writer;
+    private final StripedTickBuffer buffer;
+    private final DbCircuitBreaker breaker;
+    private final TickMetrics metrics;
+
+    @Value("${app.sources.batch-size:5000}")
+    private int batchSize = 5000;   // Меток в одной транзакции потока записи
+    @Value("${app.sources.idle-ms:50}")
+    private long idleMs = 50;       // Пауза потока записи, если полоса пуста или БД недоступна
+
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    public SourceWriterService(BatchWriterService writer, StripedTickBuffer buffer, DbCircuitBreaker breaker,
+                               TickMetrics metrics, MeterRegistry registry) {
+        this.writer = writer;
+        this.buffer = buffer;
+        this.breaker = breaker;
+        this.metrics = metrics;
+        Gauge.builder("ticks.sources.buffer.size", buffer, StripedTickBuffer::size)
+                .description("Метки других источников в полосах, ожидающие записи в БД")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        executor = Executors.newFixedThreadPool(buffer.stripes(), new CustomizableThreadFactory("source-writer-"));
+        for (int i = 0; i < buffer.stripes(); i++) {
+            TickBuffer stripe = buffer.stripe(i);
+            executor.execute(() -> writeLoop(stripe));
+        }
+        log.info("Запись источников: полос {} по {} меток, батч {}", buffer.stripes(),
+                buffer.stripe(0).capacity(), batchSize);
+    }
+
+    // Готова ли полоса источника принимать метки: свободно не меньше minFreeFraction её ёмкости
+    public boolean accepts(int source, double minFreeFraction) {
+        TickBuffer stripe = buffer.stripeOf(source);
+        return stripe.remainingCapacity() >= stripe.capacity() * minFreeFraction;
+    }
+
+    // Приём epochSeconds[0..n) источника без вытеснения; массив переписывается упакованными значениями.
+    // Возвращает, сколько первых меток принято
+    public int ingest(int source, long[] epochSeconds, int n) {
+        for (int i = 0; i < n; i++) {
+            epochSeconds[i] = SourceTick.pack(source, epochSeconds[i]);
+        }
+        return buffer.stripeOf(source).offerAll(epochSeconds, n);
+    }
+
+    private void writeLoop(TickBuffer stripe) {
+        long[] batch = new long[batchSize];
+        while (running) {
+            int n = breaker.isClosed() ? stripe.drainTo(batch, batchSize) : 0;
+            if (n == 0) {
+                if (!sleep(idleMs)) return;
+                continue;
+            }
+            write(stripe, batch, n);
+        }
+    }
+
+    // Запись одного батча полосы; при ошибке метки возвращаются в голову полосы
+    private boolean write(TickBuffer stripe, long[] batch, int n) {
+        Arrays.sort(batch, 0, n); // Порядок ключа (source, created_at): строки блокируются в одном порядке
+        int unique = dedupe(batch, n);
+        long t0 = System.nanoTime();
+        try {
+            BatchResult result = writer.insertSourceBatch(batch, unique);
+            metrics.batchWritten(n, System.nanoTime() - t0,
+                    new BatchResult(result.getInserted(), result.getDuplicates() + n - unique));
+            return true;
+        } catch (RuntimeException e) {
+            int restored = stripe.pushFront(batch, unique);
+            if (restored < unique) {
+                metrics.dropped(unique - restored);
+                log.warn("Не удалось вернуть в полосу {} меток источников", unique - restored);
+            }
+            String msg = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            if (breaker.onWriteFailure(System.currentTimeMillis(), msg)) {
+                metrics.dbDown();
+                log.error("Ошибка записи меток источников: {}. Переходим в офлайн-режим.", msg);
+            }
+            return false;
+        }
+    }
+
+    // Удаление повторов из отсортированного batch[0..n) на месте; возвращает число уникальных значений
+    static int dedupe(long[] batch, int n) {
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || batch[i] != batch[unique - 1]) batch[unique++] = batch[i];
+        }
+        return unique;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) executor.shutdownNow();
+        // Финальная запись остатка полос, пока БД доступна
+        long[] batch = new long[batchSize];
+        for (int i = 0; i < buffer.stripes(); i++) {
+            TickBuffer stripe = buffer.stripe(i);
+            int n;
+            while (breaker.isClosed() && (n = stripe.drainTo(batch, batchSize)) > 0) {
+                if (!write(stripe, batch, n)) break;
+            }
+        }
+        if (buffer.size() > 0) {
+            log.warn("Завершение работы: в полосах источников осталось {} меток (не успели записать).", buffer.size());
+        }
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.index.SecondBitmap;
+import leon.task.timeindb.storage.TicksExpiredEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/*
+ * Индекс полноты данных: битовая карта секунд, за которые в БД есть метка.
+ *
+ * Строится один раз при старте чтением всей таблицы и дополняется каждым закоммиченным батчем
+ * (TicksInsertedEvent после коммита). Пока загрузка не завершена, isReady() == false.
+ * Тот же индекс служит фильтром повторов перед записью (withoutCommitted): в нём только закоммиченные метки,
+ * поэтому отброшенная по нему метка гарантированно уже есть в таблице.
+ *
+ * Индекс дополняется только коммитами этого экземпляра. При app.single-writer=false метки других экземпляров
+ * в нём не видны: /ticks/gaps отвечает 503, а фильтр повторов остаётся верным — он лишь реже срабатывает.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TickIndexService {
+
+    private static final int LOAD_FETCH_SIZE = 10_000; // Строк за одно обращение курсора при загрузке
+
+    private final JdbcTemplate jdbc;
+    private final DbCircuitBreaker breaker;
+    private final SecondBitmap bitmap = new SecondBitmap();
+
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public SecondBitmap bitmap() {
+        return bitmap;
+    }
+
+    // Метки батча, которых ещё нет в таблице по данным индекса; до загрузки индекса батч возвращается как есть.
+    // Проверяются только целые секунды — индекс посекундный, а метка с долями секунды в нём не представлена
+    public List<Instant> withoutCommitted(List<Instant> ticks) {
+        if (!ready || ticks.isEmpty()) return ticks;
+        long[] seconds = new long[ticks.size()];
+        for (int i = 0; i < seconds.length; i++) {
+            seconds[i] = ticks.get(i).getEpochSecond();
+        }
+        BitSet known = bitmap.containsAll(seconds, seconds.length);
+        if (known.isEmpty()) return ticks;
+        List<Instant> fresh = new ArrayList<>(ticks.size() - known.cardinality());
+        for (int i = 0; i < seconds.length; i++) {
+            Instant ts = ticks.get(i);
+            if (!known.get(i) || ts.getNano() != 0) fresh.add(ts);
+        }
+        return fresh;
+    }
+
+    // Загрузка индекса из таблицы; новые батчи при этом уже попадают в индекс через событие
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true) // В PostgreSQL курсор с fetch size работает только вне autocommit
+    public void load() {
+        long started = System.nanoTime();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        long[] chunk = new long[LOAD_FETCH_SIZE];
+        int[] n = {0};
+        try {
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT created_at FROM " + TimeEntity.TABLE
+                        + " WHERE source = " + TimeEntity.DEFAULT_SOURCE);
+                ps.setFetchSize(LOAD_FETCH_SIZE);
+                return ps;
+            }, rs -> {
+                chunk[n[0]++] = rs.getTimestamp(1, utc).toInstant().getEpochSecond();
+                if (n[0] == chunk.length) {
+                    bitmap.addAll(chunk, n[0]);
+                    n[0] = 0;
+                }
+            });
+            bitmap.addAll(chunk, n[0]);
+            ready = true;
+            log.info("Индекс полноты загружен: {} секунд, ~{} КБ, {} мс", bitmap.cardinality(),
+                    bitmap.sizeInBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+        } catch (DataAccessException e) {
+            // БД недоступна при старте — /ticks/gaps и фильтр повторов выключены, загрузку повторит reload()
+            log.warn("Не удалось загрузить индекс полноты: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Повтор загрузки, если при старте БД была недоступна; пока запись в БД не восстановлена, не пытаемся
+    @Scheduled(fixedDelayString = "${app.index.reload-interval-ms:5000}",
+            initialDelayString = "${app.index.reload-interval-ms:5000}")
+    @Transactional(readOnly = true) // Вызов load() изнутри бина идёт мимо прокси — транзакция курсора открывается здесь
+    public void reload() {
+        if (ready || !breaker.isClosed()) return;
+        load();
+    }
+
+    // Дополнение индекса вставленными метками после коммита батча
+    @TransactionalEventListener
+    public void onInserted(TicksInsertedEvent event) {
+        long[] seconds = new long[event.getTicks().size()];
+        int i = 0;
+        for (Instant ts : event.getTicks()) {
+            seconds[i++] = ts.getEpochSecond();
+        }
+        bitmap.addAll(seconds, i);
+    }
+
+    // Метки удалены по сроку хранения — убираем их секунды из индекса, включая начало суток границы
+    @EventListener
+    public void onExpired(TicksExpiredEvent event) {
+        bitmap.removeBefore(event.getBefore().getEpochSecond());
+    }
+}
@@ -0,0 +1,158 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.cache.RecentTicksCache;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.repository.TimeRepository;
+import leon.task.timeindb.storage.TicksExpiredEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/*
+ * Чтение меток: постраничное (по диапазону или keyset-курсору) и потоковое.
+ * Страницы и последняя метка сначала ищутся в кэше последних меток и идут в БД только для старых диапазонов —
+ * опрос новых данных не занимает соединения пула, нужные фоновой записи.
+ *
+ * Кэш и ETag строятся по событиям коммита этого экземпляра, поэтому верны, только если он единственный пишет в БД.
+ * При app.single-writer=false (несколько экземпляров на одну БД) кэш не используется, все чтения идут в БД,
+ * а ETag не выдаётся — иначе 304 скрывал бы метки, записанные другими экземплярами.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TickQueryService {
+
+    // Границы "открытого" диапазона, когда from/to не заданы
+    public static final Instant MIN = Instant.parse("0001-01-01T00:00:00Z");
+    public static final Instant MAX = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final TimeRepository repo;
+    private final RecentTicksCache cache;
+    private final TickMetrics metrics;
+    private final DbCircuitBreaker breaker;
+
+    @Value("${app.single-writer:true}")
+    private boolean singleWriter = true; // Все записи в БД идут через этот экземпляр
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36); // Отличает ETag разных запусков
+
+    // Получатель меток при потоковом чтении (может писать прямо в ответ)
+    @FunctionalInterface
+    public interface TickSink {
+        void accept(Instant ts) throws IOException;
+    }
+
+    // ETag для ответов чтения: меняется при каждом коммите новых меток; null — экземпляр не видит всех записей
+    public String etag() {
+        if (!singleWriter) return null;
+        return "\"" + bootId + "-" + cache.version() + "\"";
+    }
+
+    // Страница не более limit меток из [from, to); если задан after — только метки строго после него.
+    // Без @Transactional: попадание в кэш не должно брать соединение из пула
+    public List<Instant> page(Instant from, Instant to, Instant after, int limit) {
+        boolean useAfter = after != null && !after.isBefore(from);
+        // Метки посекундные: первая подходящая секунда и граница "до" в секундах
+        long lower = useAfter ? after.getEpochSecond() + 1 : ceilSecond(from);
+        long[] cached = singleWriter ? cache.range(lower, ceilSecond(to), limit) : null;
+        if (singleWriter) metrics.cacheLookup(cached != null);
+        if (cached != null) {
+            List<Instant> page = new ArrayList<>(cached.length);
+            for (long s : cached) page.add(Instant.ofEpochSecond(s));
+            return page;
+        }
+
+        PageRequest page = PageRequest.of(0, limit);
+        // Курсор after имеет смысл только если он не раньше нижней границы диапазона
+        return useAfter
+                ? repo.findAfter(after, to, page)
+                : repo.findRange(from, to, page);
+    }
+
+    // Самая новая метка (null — таблица пуста)
+    public Instant latest() {
+        OptionalLong cached = singleWriter ? cache.latest() : OptionalLong.empty();
+        if (singleWriter) metrics.cacheLookup(cached.isPresent());
+        if (cached.isPresent()) return Instant.ofEpochSecond(cached.getAsLong());
+        List<Instant> rows = repo.findLatest(PageRequest.of(0, 1));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Загрузка кэша самыми новыми метками таблицы; метки батчей, закоммиченных тем временем, уже попадают в кэш
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCache() {
+        if (!singleWriter) {
+            log.info("Кэш последних меток выключен: app.single-writer=false, чтения идут в БД");
+            return;
+        }
+        try {
+            List<Instant> newest = repo.findLatest(PageRequest.of(0, cache.capacity()));
+            long[] seconds = new long[newest.size()];
+            for (int i = 0; i < seconds.length; i++) seconds[i] = newest.get(i).getEpochSecond();
+            // Прочитано меньше ёмкости — в кэше вся таблица
+            cache.load(seconds, seconds.length, seconds.length < cache.capacity(), Instant.now().getEpochSecond());
+            log.info("Кэш последних меток загружен: {} меток", cache.size());
+        } catch (DataAccessException e) {
+            // БД недоступна при старте — чтения идут в БД, загрузку повторит reloadCache()
+            log.warn("Не удалось загрузить кэш последних меток: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Повтор загрузки, если при старте БД была недоступна; пока запись в БД не восстановлена, не пытаемся
+    @Scheduled(fixedDelayString = "${app.cache.reload-interval-ms:5000}",
+            initialDelayString = "${app.cache.reload-interval-ms:5000}")
+    public void reloadCache() {
+        if (!singleWriter || cache.isLoaded() || !breaker.isClosed()) return;
+        loadCache();
+    }
+
+    // Метки закоммиченного батча — в кэш
+    @TransactionalEventListener
+    public void onInserted(TicksInsertedEvent event) {
+        if (!singleWriter) return;
+        long[] seconds = new long[event.getTicks().size()];
+        int i = 0;
+        for (Instant ts : event.getTicks()) seconds[i++] = ts.getEpochSecond();
+        cache.add(seconds, i, Instant.now().getEpochSecond());
+    }
+
+    // Метки удалены по сроку хранения — убираем их из кэша; версия кэша (и ETag) меняется
+    @EventListener
+    public void onExpired(TicksExpiredEvent event) {
+        cache.removeBefore(event.getBefore().getEpochSecond());
+    }
+
+    // Потоковое чтение [from, to): читаются только значения created_at, поэтому память не растёт с размером таблицы
+    @Transactional(readOnly = true)
+    public long stream(Instant from, Instant to, TickSink sink) throws IOException {
+        long count = 0;
+        try (Stream<Instant> rows = repo.streamRange(from, to)) {
+            Iterator<Instant> it = rows.iterator();
+            while (it.hasNext()) {
+                sink.accept(it.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long ceilSecond(Instant ts) {
+        return ts.getNano() == 0 ? ts.getEpochSecond() : ts.getEpochSecond() + 1;
+    }
+}
@@ -0,0 +1,207 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.entity.TickRollup;
+import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.repository.SqlDialect;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Счётчики меток по минутам и часам (UTC) в таблице tick_rollup.
+ *
+ * apply() вызывается из BatchWriterService.insertBatch в той же транзакции и получает только реально
+ * вставленные метки, поэтому дубли счётчики не увеличивают, а откат записи откатывает и их.
+ * Статистика читается из tick_rollup за O(интервалов), без сканирования time_entity.
+ *
+ * Пересчёт при старте (backfillIfEmpty) перезаписывает счётчики, поэтому на время его транзакции apply() не работает:
+ * блокировка в памяти держится apply() до конца транзакции записи, а пересчётом — до своего коммита
+ * (в PostgreSQL дополнительно LOCK TABLE — для писателей других экземпляров). Метки, вставленные писателем,
+ * который ждёт блокировку, в снимок пересчёта не попадают и прибавляются его apply() после пересчёта.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TickRollupService {
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock backfillLock = new ReentrantReadWriteLock(); // apply() — чтение, пересчёт — запись
+
+    @Value("${app.rollup.backfill-on-start:true}")
+    private boolean backfillOnStart = true; // Пересчитать пустую tick_rollup по time_entity при старте
+
+    // Интервал статистики: начало и количество меток
+    @lombok.Value
+    public static class Bucket {
+        Instant start;
+        long count;
+    }
+
+    // Прибавляет вставленные метки к счётчикам их интервалов; вызывается внутри транзакции записи
+    public void apply(SqlDialect dialect, List<Instant> inserted) {
+        if (inserted.isEmpty()) return;
+        List<long[]> rows = new ArrayList<>(); // {ordinal гранулярности, начало интервала, прирост}
+        for (Granularity g : Granularity.values()) {
+            if (!g.isStored()) continue;
+            for (Map.Entry<Long, Long> e : countByBucket(inserted, g).entrySet()) {
+                rows.add(new long[]{g.ordinal(), e.getKey(), e.getValue()});
+            }
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // Та же зона, что hibernate.jdbc.time_zone
+        Lock lock = backfillLock.readLock();
+        boolean held = holdUntilCompletion(lock); // Пересчёт не начнётся, пока эта транзакция не завершится
+        try {
+            upsert(dialect, rows, utc);
+        } finally {
+            if (!held) lock.unlock(); // Вне транзакции — только на время запроса
+        }
+    }
+
+    private void upsert(SqlDialect dialect, List<long[]> rows, Calendar utc) {
+        // Строки идут в порядке (гранулярность, интервал) — параллельные писатели блокируют их в одном порядке
+        jdbc.batchUpdate(upsertSql(dialect), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                long[] row = rows.get(i);
+                ps.setString(1, Granularity.values()[(int) row[0]].name());
+                ps.setTimestamp(2, Timestamp.from(Instant.ofEpochSecond(row[1])), utc);
+                ps.setLong(3, row[2]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    // Непустые интервалы granularity, пересекающие [from, to), по возрастанию
+    @Transactional(readOnly = true)
+    public List<Bucket> stats(Granularity granularity, Instant from, Instant to) {
+        Granularity source = granularity.source();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        List<Bucket> buckets = new ArrayList<>();
+        jdbc.query("SELECT bucket_start, tick_count FROM " + TickRollup.TABLE
+                        + " WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+                ps -> {
+                    ps.setString(1, source.name());
+                    ps.setTimestamp(2, Timestamp.from(Instant.ofEpochSecond(granularity.floor(from.getEpochSecond()))), utc);
+                    ps.setTimestamp(3, Timestamp.from(to), utc);
+                },
+                rs -> {
+                    long start = granularity.floor(rs.getTimestamp(1, utc).toInstant().getEpochSecond());
+                    long count = rs.getLong(2);
+                    int last = buckets.size() - 1;
+                    if (last >= 0 && buckets.get(last).getStart().getEpochSecond() == start) {
+                        // Суточный интервал собирается из часовых: строки идут по возрастанию, поэтому достаточно последнего
+                        buckets.set(last, new Bucket(buckets.get(last).getStart(), buckets.get(last).getCount() + count));
+                    } else {
+                        buckets.add(new Bucket(Instant.ofEpochSecond(start), count));
+                    }
+                });
+        return buckets;
+    }
+
+    // Пересчёт счётчиков по уже записанным меткам, если таблица пуста (первый запуск на существующих данных)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (!backfillOnStart) return;
+        holdUntilCompletion(backfillLock.writeLock()); // Ждёт завершения транзакций, уже вызвавших apply()
+        try {
+            SqlDialect dialect = SqlDialect.detect(jdbc);
+            if (dialect == SqlDialect.POSTGRES) {
+                // Конфликтует с ROW EXCLUSIVE от INSERT в apply() — писатели других экземпляров ждут коммита пересчёта
+                jdbc.execute("LOCK TABLE " + TickRollup.TABLE + " IN SHARE ROW EXCLUSIVE MODE");
+            }
+            Boolean present = jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + TickRollup.TABLE + ")", Boolean.class);
+            if (Boolean.TRUE.equals(present)) return;
+            long rows = 0;
+            for (Granularity g : Granularity.values()) {
+                if (g.isStored()) rows += jdbc.update(recountSql(dialect, g));
+            }
+            if (rows > 0) {
+                log.info("Статистика tick_rollup пересчитана по существующим меткам: {} интервалов", rows);
+            }
+        } catch (DataAccessException e) {
+            // БД недоступна при старте — статистика по старым меткам появится после перезапуска
+            log.warn("Не удалось пересчитать tick_rollup: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Пересчёт интервалов granularity по меткам источника по умолчанию. Счётчик перезаписывается, а не складывается:
+    // apply() на время пересчёта заблокирован, поэтому в счётчике могут быть только строки, уже видимые пересчёту
+    static String recountSql(SqlDialect dialect, Granularity g) {
+        String select = "SELECT '" + g.name() + "', DATE_TRUNC('" + g.name().toLowerCase() + "', created_at), COUNT(*) FROM "
+                + TimeEntity.TABLE + " WHERE source = " + TimeEntity.DEFAULT_SOURCE
+                + " GROUP BY DATE_TRUNC('" + g.name().toLowerCase() + "', created_at)";
+        if (dialect == SqlDialect.POSTGRES) {
+            return "INSERT INTO " + TickRollup.TABLE + " (granularity, bucket_start, tick_count) " + select
+                    + " ON CONFLICT (granularity, bucket_start) DO UPDATE SET tick_count = EXCLUDED.tick_count";
+        }
+        return "MERGE INTO " + TickRollup.TABLE + " r USING (" + select + ") s(granularity, bucket_start, tick_count)"
+                + " ON r.granularity = s.granularity AND r.bucket_start = s.bucket_start"
+                + " WHEN MATCHED THEN UPDATE SET tick_count = s.tick_count"
+                + " WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, tick_count)"
+                + " VALUES (s.granularity, s.bucket_start, s.tick_count)";
+    }
+
+    // Захват lock до завершения текущей транзакции; false — транзакции нет, освободить нужно вызывающему
+    private static boolean holdUntilCompletion(Lock lock) {
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return false;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock(); // Тот же поток, что и захват: синхронизации выполняются в потоке транзакции
+            }
+        });
+        return true;
+    }
+
+    // Количество меток по началам интервалов
+    static TreeMap<Long, Long> countByBucket(List<Instant> ticks, Granularity granularity) {
+        TreeMap<Long, Long> counts = new TreeMap<>();
+        for (Instant ts : ticks) {
+            counts.merge(granularity.floor(ts.getEpochSecond()), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    // Увеличение счётчика интервала с созданием строки при первом попадании
+    static String upsertSql(SqlDialect dialect) {
+        if (dialect == SqlDialect.POSTGRES) {
+            return "INSERT INTO " + TickRollup.TABLE + " (granularity, bucket_start, tick_count) VALUES (?, ?, ?)"
+                    + " ON CONFLICT (granularity, bucket_start) DO UPDATE SET tick_count = "
+                    + TickRollup.TABLE + ".tick_count + EXCLUDED.tick_count";
+        }
+        return "MERGE INTO " + TickRollup.TABLE + " r USING (VALUES (CAST(? AS VARCHAR), CAST(? AS TIMESTAMP), CAST(? AS BIGINT)))"
+                + " s(granularity, bucket_start, tick_count)"
+                + " ON r.granularity = s.granularity AND r.bucket_start = s.bucket_start"
+                + " WHEN MATCHED THEN UPDATE SET tick_count = r.tick_count + s.tick_count"
+                + " WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, tick_count)"
+                + " VALUES (s.granularity, s.bucket_start, s.tick_count)";
+    }
+}
@@ -0,0 +1,12 @@
+package leon.task.timeindb.service;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+// Метки, вставленные одним батчем; слушатели получают событие после коммита (@TransactionalEventListener)
+@Value
+public class TicksInsertedEvent {
+    List<Instant> ticks;
+}
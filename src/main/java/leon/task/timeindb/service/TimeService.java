@@ -1,126 +1,318 @@
 package leon.task.timeindb.service;
 
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.metrics.TickMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import leon.task.timeindb.repository.TimeRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.transaction.CannotCreateTransactionException;
 import org.hibernate.exception.JDBCConnectionException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TimeService {
 
-    private final TimeRepository repo;  // Репозиторий для работы с БД
+    private final DbCircuitBreaker breaker; // Доступность БД: штатная запись, офлайн-режим или пробные батчи
     private final BatchWriterService writer; // Сервис для пакетной записи
-    private final LinkedBlockingDeque<Instant> buffer;   // Буфер-очередь для временных меток (потокобезопасная)
+    private final TickBuffer buffer;   // Буфер epoch-секунд (потокобезопасный)
+    private final TickJournal journal; // Журнал на диске для офлайн-режима (может быть отключён)
+    private final TickMetrics metrics; // Метрики Micrometer
+    private final AdaptiveFlushController flow; // Размер батча и лимит цикла записи
+    private final BacklogReplayService replay;  // Параллельная дозапись большой очереди после переподключения
+
+    // Доля заполнения буфера, после которой метки переносятся в журнал на диске
+    @Value("${app.journal.spill-high-water:0.8}")
+    private double spillHighWater = 0.8;
+
+    // Генерация меток по системным часам раз в секунду; нагрузочный стенд выключает её и подаёт свои метки
+    @Value("${app.generator.enabled:true}")
+    private boolean generatorEnabled = true;
 
-    private volatile boolean dbUp = true;  // Флаг доступности БД (volatile для visibility между потоками)
-    private volatile long lastReconnectTryMs = 0L;  // Время последней попытки переподключения
     private final AtomicLong dropped = new AtomicLong();  // Счетчик потерянных меток (атомарный для thread-safety)
 
+    private final ReentrantLock flushLock = new ReentrantLock(); // Запись в БД идёт в один поток: фоновая и после переподключения не пересекаются
+    private long[] drainBuf = new long[0]; // Переиспользуемый массив для выборки из буфера (доступ только под flushLock)
+    private long[] replayBuf = new long[0]; // Массив для прохода параллельной дозаписи (доступ только под flushLock)
+
     @Scheduled(fixedRate = 1000)  // Запускается каждую секунду - генерирует новую временную метку
     public void generateTick() {
+        if (!generatorEnabled) return;
         Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS); // Получение текущего времени с округлением до секунд
-        // Пытаемся добавить в очередь, если не получается - вытесняем самую старую
-        if (!buffer.offer(now)) {
-            buffer.pollFirst(); // Если очередь полна - удаляем самую старую метку из начала
-            buffer.offer(now); // Добавляем новую метку
+        recordTick(now.getEpochSecond());
+    }
+
+    // Приём метки генератора: при переполнении буфера вытесняется самая старая. Вызывается и нагрузочным стендом
+    // (src/loadtest) с синтетическими секундами вместо системных часов
+    public void recordTick(long epochSecond) {
+        // Буфер почти заполнен - переносим его на диск, пока метки не начали вытесняться
+        if (journal.isEnabled() && !journal.isActive() && buffer.size() >= buffer.capacity() * spillHighWater) {
+            spillToJournal("буфер заполнен выше порога");
+        }
+        // Пока журнал активен, новые метки пишутся в его конец - так сохраняется порядок дозаписи
+        if (journal.appendIfActive(epochSecond)) return;
+        // Добавляем в буфер; если он полон - самая старая метка вытесняется атомарно вместе с добавлением
+        if (buffer.offerEvictingOldest(epochSecond)) {
             long n = dropped.incrementAndGet(); // Увеличиваем счетчик потерянных меток и получаем новое значение
+            metrics.dropped(1);
             log.warn("Очередь на запись переполнена — удаляем самую старую метку. Потеряно с начала работы: {}", n);
         }
     }
 
-    @Scheduled(fixedDelay = 200)    // Частая фоновая запись - каждые 200мс
+    // Приём меток от внешних источников (POST /ticks) без вытеснения; возвращает, сколько первых меток принято
+    public int ingest(long[] epochSeconds, int n) {
+        // Те же правила, что и для generateTick: буфер выше порога — на диск, при активном журнале — в его конец
+        if (journal.isEnabled() && !journal.isActive() && buffer.size() >= buffer.capacity() * spillHighWater) {
+            spillToJournal("буфер заполнен выше порога");
+        }
+        if (journal.appendAllIfActive(epochSeconds, n)) return n;
+        return buffer.offerAll(epochSeconds, n);
+    }
+
+    // Готов ли сервис принимать внешние метки: журнал активен или в буфере свободно не меньше minFreeFraction
+    public boolean acceptsIngest(double minFreeFraction) {
+        if (journal.isActive()) return true; // Метки пишутся на диск, буфер не расходуется
+        return buffer.remainingCapacity() >= buffer.capacity() * minFreeFraction;
+    }
+
+    @Scheduled(fixedDelayString = "${app.flush.interval-ms:200}")    // Частая фоновая запись - по умолчанию каждые 200мс
     public void backgroundFlush() {
+        journal.sync(); // Сброс дописанных в журнал меток на диск
         flushIfPossible();  // Вызов метода фоновой записи данных в БД
     }
 
-    @Scheduled(fixedDelay = 1000)     // Проверка восстановления соединения с БД - каждую секунду
+    // Проверка восстановления БД: частый тик, реальная проверка - только по истечении паузы автомата (backoff)
+    @Scheduled(fixedDelayString = "${app.db.probe-tick-ms:250}")
     public void reconnectLoop() {
-        if (dbUp) return; // Если БД доступна - выходим
-        long now = System.currentTimeMillis(); // Получение текущего времени в миллисекундах
-        // Проверяем не чаще чем раз в 5 секунд
-        if (now - lastReconnectTryMs < TimeUnit.SECONDS.toMillis(5)) return;
+        long now = System.currentTimeMillis();
+        if (!breaker.probeDue(now)) return; // БД доступна, идёт пробная запись или пауза ещё не истекла
 
-        lastReconnectTryMs = now; // Обновление времени последней попытки подключения
-        try {
-            repo.count(); // Простая проверка доступности БД
-            dbUp = true; // Установка флага доступности БД
-            log.info("Соединение с БД восстановлено. Начинаем дозапись {} накопленных меток.", buffer.size());
-            flushIfPossible(); // Запуск процесса записи накопленных данных
-        } catch (CannotCreateTransactionException | JDBCConnectionException | DataAccessException e) {
-            log.warn("БД всё ещё недоступна. Следующая попытка через 5 секунд. Причина: {}", safeMsg(e));
-        } catch (RuntimeException e) {
-            log.warn("Неожиданная ошибка при проверке БД: {}. Повторим через 5 секунд.", safeMsg(e));
+        boolean ok = breaker.probe(now); // Connection.isValid() на отдельном соединении вместо запроса к таблице
+        metrics.reconnectAttempt(ok);
+        if (ok) {
+            log.info("БД отвечает на проверку соединения. Пробная запись, в очереди {} меток (из них в журнале: {}).",
+                    backlog(), journal.pending());
+            flushIfPossible(); // Первый пробный батч - не дожидаясь фоновой записи
+        } else {
+            log.warn("БД всё ещё недоступна: {}. Следующая проверка через {} мс.",
+                    breaker.lastError(), breaker.nextProbeInMs(now));
         }
     }
 
     // Основной метод записи данных из буфера в БД
     private void flushIfPossible() {
-        if (!dbUp) return; // Проверка доступности БД перед записью
+        if (!breaker.allowsWrites()) return; // Проверка доступности БД перед записью
+        if (!flushLock.tryLock()) return; // Запись уже идёт в другом потоке
+        boolean restored;
+        try {
+            restored = flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+        if (restored) {
+            metrics.dbRestored();
+            log.info("Пробная запись прошла, соединение с БД восстановлено. Начинаем дозапись {} накопленных меток "
+                    + "(из них в журнале: {}).", backlog(), journal.pending());
+            replayBacklog(); // Большая очередь дозаписывается параллельно, новые метки продолжают поступать в буфер
+            flushIfPossible(); // Запуск процесса записи накопленных данных
+        }
+    }
 
+    // Цикл записи под flushLock; true, если пробная запись завершилась и БД снова доступна штатно
+    private boolean flushLocked() {
+        long started = System.nanoTime(); // Начало цикла - для таймера длительности записи
         int drainedTotal = 0; // Счетчик обработанных меток за текущую итерацию
+        boolean restored = false;
 
         // Бесконечный цикл для обработки всех данных в буфере
-        while (true) {
-            List<Instant> batch = drainUpTo(500);  // Извлечение пачки данных из буфера (до 500 элементов)
-            if (batch.isEmpty()) break; // Если буфер пуст - выход из цикла
+        while (breaker.allowsWrites()) {
+            // Сначала дозаписываем журнал (в нём самые старые метки), затем буфер
+            boolean fromJournal = true;
+            int batchLimit = breaker.limitBatch(flow.batchSize()); // Размер батча по задержке коммита, после сбоя - пробный
+            List<Instant> batch = drainJournal(batchLimit);
+            if (batch.isEmpty()) {
+                fromJournal = false;
+                batch = drainUpTo(batchLimit);  // Извлечение пачки данных из буфера
+            }
+            if (batch.isEmpty()) { // Если буфер пуст - выход из цикла
+                restored = breaker.onIdle(); // Пробовать нечего - достаточно удачной проверки соединения
+                break;
+            }
 
             try {
-                writer.insertBatch(batch); // Пакетная запись в БД
+                long t0 = System.nanoTime();
+                BatchResult result = writer.insertBatch(batch); // Пакетная запись в БД
+                long elapsed = System.nanoTime() - t0;
+                metrics.batchWritten(batch.size(), elapsed, result);
+                if (fromJournal) journal.commit(); // Записанные метки больше не нужны в журнале
                 drainedTotal += batch.size(); // Увеличение счетчика обработанных меток
+                flow.onBatch(batch.size(), elapsed, backlog());
             } catch (CannotCreateTransactionException | JDBCConnectionException | DataAccessException e) {
-                rollbackBatchToBuffer(batch); // Возвращаем данные в буфер при ошибке
-                dbUp = false; // Установка флага недоступности БД
-                log.error("БД недоступна: {}. Переходим в офлайн-режим. Будем пытаться переподключиться каждые 5 секунд.",
-                        safeMsg(e));
+                returnBatch(batch, fromJournal); // Возвращаем данные в буфер (или журнал) при ошибке
+                flow.onFailure();
+                goOffline(e);
+                log.error("БД недоступна: {}. Переходим в офлайн-режим. Следующая проверка соединения через {} мс.",
+                        safeMsg(e), breaker.nextProbeInMs(System.currentTimeMillis()));
+                spillToJournal("БД недоступна");
                 break; // Выход из цикла при ошибке
             } catch (RuntimeException e) {
-                rollbackBatchToBuffer(batch); // Возврат данных в буфер при неожиданных ошибках
-                dbUp = false; // Установка флага недоступности БД
+                returnBatch(batch, fromJournal); // Возврат данных в буфер при неожиданных ошибках
+                flow.onFailure();
+                goOffline(e);
                 log.error("Неожиданная ошибка при записи в БД: {}. Переходим в офлайн-режим.", safeMsg(e));
+                spillToJournal("ошибка записи в БД");
                 break; // Выход из цикла при ошибке
             }
-            // Ограничиваем максимальное количество за одну итерацию
-            if (drainedTotal >= 2000) break;
+            if (!breaker.isClosed()) { // Пробный батч прошёл: один за цикл, чтобы не нагружать только что поднявшуюся БД
+                restored = breaker.onWriteSuccess();
+                break;
+            }
+            // Лимит меток за одну итерацию; в режиме догонки цикл идёт, пока очередь не станет штатной
+            if (!flow.continueCycle(drainedTotal, backlog())) break;
+        }
+        if (drainedTotal > 0) metrics.flushed(System.nanoTime() - started); // Пустые циклы в таймер не попадают
+        return restored;
+    }
+
+    // Ошибка записи: автомат переходит в OPEN, следующая проверка - после паузы
+    private void goOffline(RuntimeException e) {
+        breaker.onWriteFailure(System.currentTimeMillis(), safeMsg(e));
+        metrics.dbDown();
+    }
+
+    // Параллельная дозапись очереди партициями; остаток и новые метки дописывает обычный цикл
+    private void replayBacklog() {
+        if (!replay.isEnabled() || backlog() < replay.threshold()) return;
+        flushLock.lock(); // Фоновая запись ждёт окончания дозаписи, generateTick продолжает работать
+        try {
+            while (breaker.isClosed() && backlog() >= replay.threshold()) {
+                if (replayBuf.length < replay.maxTicksPerRun()) replayBuf = new long[replay.maxTicksPerRun()];
+                // Журнал содержит самые старые метки - сначала он
+                boolean fromJournal = journal.isActive();
+                int n = fromJournal ? journal.read(replayBuf, replayBuf.length) : buffer.drainTo(replayBuf, replayBuf.length);
+                if (n == 0) break;
+
+                long t0 = System.nanoTime();
+                ReplayResult result = replay.replay(replayBuf, n);
+                metrics.replayed(System.nanoTime() - t0, result.getWritten(), result.getFailedPartitions());
+                log.info("Дозапись: записано {} меток за {} мс, осталось {}",
+                        result.getWritten(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0), backlog());
+                if (result.isComplete()) {
+                    if (fromJournal) journal.commit();
+                    continue;
+                }
+
+                if (fromJournal) {
+                    journal.rewind(); // Прочитанная часть журнала будет переиграна целиком, дубли отбросит БД
+                } else {
+                    restoreToBuffer(result.getFailed(), result.getFailedCount());
+                }
+                breaker.onWriteFailure(System.currentTimeMillis(), "не записаны партиции дозаписи: " + result.getFailedPartitions());
+                metrics.dbDown();
+                flow.onFailure();
+                log.error("Дозапись прервана: {} партиций не записаны. Переходим в офлайн-режим.", result.getFailedPartitions());
+                spillToJournal("ошибка дозаписи");
+            }
+        } finally {
+            flushLock.unlock();
         }
     }
 
-    // Выборка элементов из очереди (неблокирующая)
+    // Все метки, ожидающие записи: в буфере и в журнале
+    private long backlog() {
+        return buffer.size() + journal.pending();
+    }
+
+    // Выборка элементов из буфера (неблокирующая) в переиспользуемый массив
     private List<Instant> drainUpTo(int max) {
-        List<Instant> list = new ArrayList<>(Math.min(max, buffer.size())); // Создание списка с начальной емкостью (минимум из max и размера буфера)
-        buffer.drainTo(list, max);   // Неблокирующее извлечение элементов из очереди в список
+        if (drainBuf.length < max) drainBuf = new long[max]; // Массив растёт один раз до нужного размера
+        return toInstants(buffer.drainTo(drainBuf, max));   // Извлечение до max самых старых меток
+    }
+
+    // Чтение следующей пачки из журнала; подтверждается через journal.commit() после записи в БД
+    private List<Instant> drainJournal(int max) {
+        if (!journal.isActive()) return List.of();
+        if (drainBuf.length < max) drainBuf = new long[max];
+        return toInstants(journal.read(drainBuf, max));
+    }
+
+    private List<Instant> toInstants(int n) {
+        List<Instant> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(Instant.ofEpochSecond(drainBuf[i]));
+        }
         return list; // Возврат извлеченных элементов
     }
 
-    // Возврат данных в начало очереди при ошибках
+    private void returnBatch(List<Instant> batch, boolean fromJournal) {
+        if (fromJournal) {
+            journal.rewind(); // Метки остались в журнале - просто перечитаем их позже
+        } else {
+            rollbackBatchToBuffer(batch);
+        }
+    }
+
+    // Перенос содержимого буфера в журнал на диске: дальше метки копятся там, а не в куче
+    private void spillToJournal(String reason) {
+        if (!journal.isEnabled()) return;
+        try {
+            long moved = journal.spill(buffer);
+            log.info("Метки переносятся в журнал на диске ({}): перенесено {}, всего ожидает записи {}",
+                    reason, moved, journal.pending());
+        } catch (UncheckedIOException e) {
+            log.error("Не удалось перенести метки в журнал: {}. Они остаются в буфере.", safeMsg(e));
+        }
+    }
+
+    // Возврат данных в начало буфера при ошибках
     private void rollbackBatchToBuffer(List<Instant> batch) {
-        for (int i = batch.size() - 1; i >= 0; i--) { // Обратный обход списка для сохранения исходного порядка
-            buffer.offerFirst(batch.get(i)); // Добавление элемента в начало очереди
+        int n = batch.size();
+        if (drainBuf.length < n) drainBuf = new long[n];
+        for (int i = 0; i < n; i++) {
+            drainBuf[i] = batch.get(i).getEpochSecond();
+        }
+        restoreToBuffer(drainBuf, n);
+    }
+
+    // Возврат src[0..n) в голову буфера; не поместившиеся метки считаются потерянными
+    private void restoreToBuffer(long[] src, int n) {
+        int restored = buffer.pushFront(src, n); // Возврат в голову буфера с сохранением порядка
+        if (restored < n) {
+            // Пока батч писался, буфер заполнился новыми метками — самые старые из батча не поместились
+            long total = dropped.addAndGet(n - restored);
+            metrics.dropped(n - restored);
+            log.warn("Не удалось вернуть в буфер {} меток из батча. Потеряно с начала работы: {}", n - restored, total);
         }
     }
 
     @PreDestroy // Метод, выполняемый перед уничтожением бина Spring
     public void onShutdown() {
+        flushLock.lock(); // Дожидаемся окончания текущей фоновой записи
         try {
-            flushIfPossible(); // Финальная попытка записать оставшиеся данные
+            if (breaker.allowsWrites()) flushLocked(); // Финальная попытка записать оставшиеся данные
+            if (!buffer.isEmpty() && journal.isEnabled()) {
+                spillToJournal("завершение работы"); // Остаток буфера сохраняется на диск и будет дозаписан при следующем запуске
+            }
             if (!buffer.isEmpty()) {   // Проверка наличия не записанных данных
                 log.warn("Завершение работы: в очереди осталось {} меток (не успели записать).", buffer.size());
             }
         } catch (Exception e) {
             log.warn("Ошибка при финальной дозаписи: {}", safeMsg(e));
+        } finally {
+            flushLock.unlock();
         }
     }
 
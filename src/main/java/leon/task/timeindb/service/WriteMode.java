@@ -0,0 +1,7 @@
+package leon.task.timeindb.service;
+
+// Режим записи батчей в БД (свойство app.writer.mode)
+public enum WriteMode {
+    JPA,  // Построчный repo.save() — исходный путь, без JDBC-батчинга из-за IDENTITY
+    JDBC  // Многострочный INSERT ... ON CONFLICT DO NOTHING (PostgreSQL) или MERGE (H2)
+}
@@ -0,0 +1,206 @@
+package leon.task.timeindb.storage;
+
+import leon.task.timeindb.entity.TickRollup;
+import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.repository.SqlDialect;
+import leon.task.timeindb.service.WriteMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Секционированное хранение меток в PostgreSQL (app.storage.mode=partitioned, профиль partitioned).
+ *
+ * time_entity: первичный ключ — (source, created_at) без суррогатного id, один B-tree на строку;
+ * таблица секционирована по диапазонам created_at — по суткам или месяцам в UTC.
+ * Плановая задача заранее создаёт секции на app.storage.precreate периодов вперёд и удаляет (DROP TABLE)
+ * секции, целиком вышедшие за срок app.retention — без DELETE и последующего VACUUM.
+ * Метки вне созданных секций (например, старый журнал) попадают в секцию по умолчанию.
+ *
+ * Схемой в этом режиме управляет этот класс: spring.jpa.hibernate.ddl-auto=none.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.mode", havingValue = "partitioned")
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionManager {
+
+    static final String DEFAULT_PARTITION = TimeEntity.TABLE + "_default";
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher events;
+
+    @Value("${app.storage.partition:day}")
+    private PartitionScheme scheme = PartitionScheme.DAY; // Размер секции
+    @Value("${app.storage.precreate:7}")
+    private int precreate = 7;                            // Сколько секций создавать вперёд от текущей
+    @Value("${app.retention:0d}")
+    private Duration retention = Duration.ZERO;           // Срок хранения меток (0 — хранить всё)
+    @Value("${app.writer.mode:jpa}")
+    private WriteMode writerMode = WriteMode.JPA;
+
+    private volatile boolean retryPending; // Последнее обслуживание не выполнено из-за недоступной БД
+
+    @PostConstruct
+    void init() {
+        if (writerMode == WriteMode.JPA) {
+            // Построчный save() требует суррогатного id, которого в секционированной таблице нет
+            throw new IllegalStateException("app.storage.mode=partitioned требует app.writer.mode=jdbc");
+        }
+        log.info("Секционированное хранение: секции по {}, {} вперёд, срок хранения {}",
+                scheme, precreate, retention.isZero() ? "не ограничен" : retention);
+        maintain(); // Схема и текущие секции нужны до первой записи
+    }
+
+    // Создание недостающих секций и удаление просроченных
+    @Scheduled(fixedDelayString = "${app.storage.maintenance-interval-ms:3600000}",
+            initialDelayString = "${app.storage.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        try {
+            if (!ensureSchema()) {
+                retryPending = false; // Несовместимая схема сама не исправится — ждём планового запуска
+                return;
+            }
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            List<String> existing = jdbc.queryForList("SELECT c.relname FROM pg_inherits i"
+                    + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = '" + TimeEntity.TABLE + "'::regclass",
+                    String.class);
+            for (LocalDate start : missing(scheme, today, precreate, existing)) {
+                createPartition(start);
+            }
+            if (!retention.isZero()) {
+                expire(existing, Instant.now().minus(retention));
+            }
+            retryPending = false;
+        } catch (DataAccessException e) {
+            // БД недоступна — обслуживание повторит retryMaintenance(), не дожидаясь планового запуска
+            retryPending = true;
+            log.warn("Обслуживание секций не выполнено: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Повтор после отказа БД: без него схема и текущая секция, не созданные при старте, ждали бы maintenance-interval-ms
+    @Scheduled(fixedDelayString = "${app.storage.retry-interval-ms:10000}",
+            initialDelayString = "${app.storage.retry-interval-ms:10000}")
+    public void retryMaintenance() {
+        if (retryPending) maintain();
+    }
+
+    // Секционированная time_entity, секция по умолчанию и tick_rollup; false — схема несовместима
+    private boolean ensureSchema() {
+        if (SqlDialect.detect(jdbc) != SqlDialect.POSTGRES) {
+            throw new IllegalStateException("app.storage.mode=partitioned поддерживается только для PostgreSQL");
+        }
+        String kind = jdbc.queryForObject("SELECT (SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?))",
+                String.class, TimeEntity.TABLE);
+        if (kind == null) {
+            jdbc.execute("CREATE TABLE " + TimeEntity.TABLE + " (source integer NOT NULL DEFAULT 0,"
+                    + " created_at timestamp NOT NULL, PRIMARY KEY (source, created_at)) PARTITION BY RANGE (created_at)");
+            log.info("Создана секционированная таблица {}", TimeEntity.TABLE);
+        } else if (!"p".equals(kind)) {
+            // Перенос существующей таблицы не выполняется автоматически: он требует переписать все строки
+            log.error("Таблица {} уже существует и не секционирована — перенесите данные вручную", TimeEntity.TABLE);
+            return false;
+        } else if (!hasSourceColumn()) {
+            // Ключ (source, created_at) заменяет ключ по created_at — смена первичного ключа перестраивает индекс всех секций
+            log.error("В таблице {} нет колонки source — добавьте её и ключ (source, created_at) вручную", TimeEntity.TABLE);
+            return false;
+        }
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF " + TimeEntity.TABLE + " DEFAULT");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + TickRollup.TABLE + " (granularity varchar(16) NOT NULL,"
+                + " bucket_start timestamp NOT NULL, tick_count bigint NOT NULL, PRIMARY KEY (granularity, bucket_start))");
+        return true;
+    }
+
+    private boolean hasSourceColumn() {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM information_schema.columns"
+                + " WHERE table_name = ? AND column_name = 'source')", Boolean.class, TimeEntity.TABLE));
+    }
+
+    private void createPartition(LocalDate start) {
+        String name = scheme.partitionName(start);
+        try {
+            jdbc.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TimeEntity.TABLE
+                    + " FOR VALUES FROM ('" + start + "') TO ('" + scheme.next(start) + "')");
+            log.info("Создана секция {}", name);
+        } catch (DataAccessException e) {
+            // Обычно: в секции по умолчанию уже есть строки этого диапазона
+            log.warn("Не удалось создать секцию {}: {}", name, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Удаление секций, целиком лежащих раньше cutoff, и просроченных строк секции по умолчанию.
+    // Читатели (кэш, индекс) узнают о любом удалении через TicksExpiredEvent
+    private void expire(List<String> existing, Instant cutoff) {
+        LocalDate cutoffDate = LocalDate.ofInstant(cutoff, ZoneOffset.UTC);
+        LocalDate droppedUpTo = null;
+        for (String name : expired(scheme, existing, cutoffDate)) {
+            jdbc.execute("DROP TABLE " + name);
+            LocalDate end = scheme.next(scheme.partitionStart(name));
+            if (droppedUpTo == null || end.isAfter(droppedUpTo)) droppedUpTo = end;
+            log.info("Удалена секция {} (срок хранения {})", name, retention);
+        }
+        int stale = jdbc.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE created_at < ?",
+                LocalDateTime.ofInstant(cutoff, ZoneOffset.UTC)); // timestamp без зоны хранит время UTC
+        if (stale > 0) log.info("Из {} удалено просроченных меток: {}", DEFAULT_PARTITION, stale);
+        if (droppedUpTo != null) {
+            // Статистика по удалённым меткам больше не нужна
+            jdbc.update("DELETE FROM " + TickRollup.TABLE + " WHERE bucket_start < ?",
+                    droppedUpTo.atStartOfDay());
+        }
+        if (droppedUpTo != null || stale > 0) {
+            events.publishEvent(new TicksExpiredEvent(expiredBefore(scheme, existing, cutoff)));
+        }
+    }
+
+    // Граница, раньше которой меток в таблице не осталось: не позже cutoff и начала самой ранней оставшейся секции
+    // (в ней метки до cutoff ещё хранятся); всё раньше — в удалённых секциях или в вычищенной секции по умолчанию
+    static Instant expiredBefore(PartitionScheme scheme, List<String> existing, Instant cutoff) {
+        List<String> dropped = expired(scheme, existing, LocalDate.ofInstant(cutoff, ZoneOffset.UTC));
+        Instant before = cutoff;
+        for (String name : existing) {
+            LocalDate start = scheme.partitionStart(name);
+            if (start == null || dropped.contains(name)) continue;
+            Instant from = start.atStartOfDay(ZoneOffset.UTC).toInstant();
+            if (from.isBefore(before)) before = from;
+        }
+        return before;
+    }
+
+    // Начала секций от текущей на ahead периодов вперёд, которых ещё нет
+    static List<LocalDate> missing(PartitionScheme scheme, LocalDate today, int ahead, List<String> existing) {
+        List<LocalDate> result = new ArrayList<>();
+        LocalDate start = scheme.floor(today);
+        for (int i = 0; i <= ahead; i++) {
+            if (!existing.contains(scheme.partitionName(start))) result.add(start);
+            start = scheme.next(start);
+        }
+        return result;
+    }
+
+    // Секции, конец которых не позже cutoff (все их метки старше срока хранения)
+    static List<String> expired(PartitionScheme scheme, List<String> existing, LocalDate cutoff) {
+        List<String> result = new ArrayList<>();
+        for (String name : existing) {
+            LocalDate start = scheme.partitionStart(name);
+            if (start != null && !scheme.next(start).isAfter(cutoff)) result.add(name);
+        }
+        result.sort(null);
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package leon.task.timeindb.storage;
+
+import leon.task.timeindb.entity.TimeEntity;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// Размер секции time_entity (границы в UTC) и имена секций: time_entity_p20250915 / time_entity_p202509
+public enum PartitionScheme {
+    DAY(DateTimeFormatter.BASIC_ISO_DATE) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusDays(1);
+        }
+    },
+    MONTH(DateTimeFormatter.ofPattern("uuuuMM")) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+
+        @Override
+        LocalDate parse(String suffix) {
+            return LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE);
+        }
+    };
+
+    static final String PREFIX = TimeEntity.TABLE + "_p";
+
+    private final DateTimeFormatter suffix;
+
+    PartitionScheme(DateTimeFormatter suffix) {
+        this.suffix = suffix;
+    }
+
+    // Начало секции, содержащей date
+    public abstract LocalDate floor(LocalDate date);
+
+    // Начало следующей секции (конец секции, начинающейся в start)
+    public abstract LocalDate next(LocalDate start);
+
+    public String partitionName(LocalDate start) {
+        return PREFIX + suffix.format(start);
+    }
+
+    // Начало секции по её имени; null — имя не из этой схемы (например, секция по умолчанию)
+    public LocalDate partitionStart(String name) {
+        if (!name.startsWith(PREFIX)) return null;
+        String s = name.substring(PREFIX.length());
+        if (s.length() != partitionName(LocalDate.EPOCH).length() - PREFIX.length()) return null;
+        try {
+            return parse(s);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    LocalDate parse(String suffix) {
+        return LocalDate.parse(suffix, this.suffix);
+    }
+}
@@ -0,0 +1,11 @@
+package leon.task.timeindb.storage;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+// Метки раньше before удалены из БД по сроку хранения (удалением секций и строк секции по умолчанию)
+@Value
+public class TicksExpiredEvent {
+    Instant before;
+}
@@ -0,0 +1,76 @@
+package leon.task.timeindb.storage;
+
+import leon.task.timeindb.entity.TimeEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+ * Перенос уникального ключа time_entity с (created_at) на (source, created_at) в существующей БД (app.storage.mode=plain).
+ *
+ * ddl-auto=update добавляет колонку source и новый ключ, но старое ограничение unique(created_at) не удаляет:
+ * с ним одинаковые секунды разных источников нарушают уникальность, и INSERT ... ON CONFLICT (source, created_at) падает.
+ * Старое ограничение ищется в information_schema и удаляется после создания схемы Hibernate, до запуска записи.
+ * Если удалить его не удалось (например, нет прав), запуск прерывается с командой для ручного удаления;
+ * если БД недоступна при старте — проверка повторяется через app.storage.retry-interval-ms.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.mode", havingValue = "plain", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class UniqueKeyMigration implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbc;
+
+    private volatile boolean retryPending; // Проверка не выполнена из-за недоступной БД
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.retry-interval-ms:10000}",
+            initialDelayString = "${app.storage.retry-interval-ms:10000}")
+    public void retryMigration() {
+        if (retryPending) migrate();
+    }
+
+    void migrate() {
+        List<String> legacy;
+        try {
+            legacy = legacyConstraints();
+            retryPending = false;
+        } catch (DataAccessException e) {
+            retryPending = true;
+            log.warn("Не удалось проверить уникальный ключ {}: {}", TimeEntity.TABLE, e.getMostSpecificCause().getMessage());
+            return;
+        }
+        for (String name : legacy) {
+            String sql = "ALTER TABLE " + TimeEntity.TABLE + " DROP CONSTRAINT \"" + name + "\"";
+            try {
+                jdbc.execute(sql);
+                log.info("Удалено старое ограничение {} unique(created_at): ключ теперь (source, created_at)", name);
+            } catch (DataAccessException e) {
+                throw new IllegalStateException("Старое ограничение unique(created_at) таблицы " + TimeEntity.TABLE
+                        + " не удалено (" + e.getMostSpecificCause().getMessage() + "), выполните вручную: " + sql, e);
+            }
+        }
+    }
+
+    // Уникальные ограничения текущей схемы ровно по одной колонке created_at (имена таблиц в H2 — в верхнем регистре)
+    private List<String> legacyConstraints() {
+        return jdbc.queryForList("SELECT tc.constraint_name FROM information_schema.table_constraints tc"
+                + " JOIN information_schema.key_column_usage k ON k.constraint_schema = tc.constraint_schema"
+                + " AND k.constraint_name = tc.constraint_name AND k.table_name = tc.table_name"
+                + " WHERE tc.constraint_type = 'UNIQUE' AND lower(tc.table_name) = ? AND tc.table_schema = current_schema"
+                + " GROUP BY tc.constraint_name HAVING count(*) = 1 AND max(lower(k.column_name)) = 'created_at'",
+                String.class, TimeEntity.TABLE);
+    }
+}
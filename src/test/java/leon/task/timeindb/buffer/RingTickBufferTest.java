@@ -0,0 +1,74 @@
+package leon.task.timeindb.buffer;
+
+import org.junit.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingTickBufferTest {
+
+    @Test // Тест проверяет, что при переполнении вытесняется самая старая метка, а новая добавляется в хвост
+    public void offerEvictingOldest_dropsOldestAtomically() {
+        RingTickBuffer buffer = new RingTickBuffer(3); // Буфер на три метки
+
+        assertThat(buffer.offerEvictingOldest(1)).isFalse();
+        assertThat(buffer.offerEvictingOldest(2)).isFalse();
+        assertThat(buffer.offerEvictingOldest(3)).isFalse();
+        assertThat(buffer.offerEvictingOldest(4)).isTrue(); // Метка 1 вытеснена
+        assertThat(buffer.offer(5)).isFalse(); // Обычное добавление в полный буфер не вытесняет
+
+        long[] out = new long[10];
+        int n = buffer.drainTo(out, 10);
+        assertThat(n).isEqualTo(3);
+        assertThat(out).startsWith(2, 3, 4);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test // Тест проверяет выборку через границу массива и возврат батча в голову с сохранением порядка
+    public void drainAndPushFront_preserveOrderAcrossWrap() {
+        RingTickBuffer buffer = new RingTickBuffer(4);
+        long[] out = new long[4];
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.offer(3);
+        buffer.drainTo(out, 2); // Голова смещается на индекс 2
+        buffer.offer(4);
+        buffer.offer(5);        // Хвост переходит через конец массива
+
+        int n = buffer.drainTo(out, 2);
+        assertThat(n).isEqualTo(2);
+        assertThat(out).startsWith(3, 4);
+
+        assertThat(buffer.pushFront(out, n)).isEqualTo(2); // Возврат батча: порядок 3, 4, 5
+        buffer.offer(6);
+        assertThat(buffer.pushFront(new long[]{1, 2}, 2)).isZero(); // Места нет — ничего не возвращено
+
+        assertThat(buffer.drainTo(out, 4)).isEqualTo(4);
+        assertThat(out).containsExactly(3, 4, 5, 6);
+    }
+
+    @Test // Тест проверяет, что при нехватке места в голову возвращаются самые новые элементы батча
+    public void pushFront_keepsNewestWhenPartiallyFull() {
+        RingTickBuffer buffer = new RingTickBuffer(3);
+        buffer.offer(10);
+
+        assertThat(buffer.pushFront(new long[]{7, 8, 9}, 3)).isEqualTo(2);
+
+        long[] out = new long[3];
+        assertThat(buffer.drainTo(out, 3)).isEqualTo(3);
+        assertThat(out).containsExactly(8, 9, 10);
+    }
+
+    @Test // Тест проверяет пакетное добавление через границу массива и частичный приём при нехватке места
+    public void offerAll_wrapsAndStopsWhenFull() {
+        RingTickBuffer buffer = new RingTickBuffer(4);
+        long[] out = new long[4];
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.drainTo(out, 2); // Голова смещается на индекс 2
+
+        assertThat(buffer.offerAll(new long[]{3, 4, 5, 6, 7}, 5)).isEqualTo(4); // Последняя метка не помещается
+        assertThat(buffer.offerAll(new long[]{8}, 1)).isZero();
+
+        assertThat(buffer.drainTo(out, 4)).isEqualTo(4);
+        assertThat(out).containsExactly(3, 4, 5, 6);
+    }
+}
@@ -0,0 +1,44 @@
+package leon.task.timeindb.buffer;
+
+import leon.task.timeindb.ingest.TickReader;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedTickBufferTest {
+
+    @Test // Тест проверяет упаковку метки источника: обратимость на границах диапазона и порядок (source, created_at)
+    public void sourceTick_roundTripsAndSortsBySourceThenTime() {
+        long[][] cases = {{0, TickReader.MIN_SECOND}, {7, 0}, {7, -1}, {SourceTick.MAX_SOURCE, TickReader.MAX_SECOND}};
+        for (long[] c : cases) {
+            long packed = SourceTick.pack((int) c[0], c[1]);
+            assertThat(packed).isNotNegative();
+            assertThat(SourceTick.source(packed)).isEqualTo(c[0]);
+            assertThat(SourceTick.second(packed)).isEqualTo(c[1]);
+        }
+
+        long[] values = {SourceTick.pack(2, 100), SourceTick.pack(1, 200), SourceTick.pack(1, -5), SourceTick.pack(2, 50)};
+        Arrays.sort(values);
+        assertThat(values).containsExactly(SourceTick.pack(1, -5), SourceTick.pack(1, 200),
+                SourceTick.pack(2, 50), SourceTick.pack(2, 100));
+        assertThat(SourceTick.isValidSource(-1)).isFalse();
+        assertThat(SourceTick.isValidSource(SourceTick.MAX_SOURCE + 1)).isFalse();
+    }
+
+    @Test // Тест проверяет, что источник всегда попадает в одну полосу, а подряд идущие источники расходятся по всем
+    public void stripeOf_isStableAndSpreadsSources() {
+        StripedTickBuffer buffer = new StripedTickBuffer(4, 10);
+        Set<TickBuffer> used = new HashSet<>();
+        for (int source = 1; source <= 16; source++) {
+            assertThat(buffer.stripeOf(source)).isSameAs(buffer.stripeOf(source));
+            used.add(buffer.stripeOf(source));
+        }
+        assertThat(used).hasSize(4);
+
+        buffer.stripeOf(3).offerAll(new long[]{SourceTick.pack(3, 1), SourceTick.pack(3, 2)}, 2);
+        assertThat(buffer.size()).isEqualTo(2);
+        assertThat(buffer.capacity()).isEqualTo(40);
+    }
+}
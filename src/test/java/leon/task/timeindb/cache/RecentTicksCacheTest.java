@@ -0,0 +1,83 @@
+package leon.task.timeindb.cache;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecentTicksCacheTest {
+
+    private static final long NOW = 1_000_000;
+
+    @Test // Вся таблица в кэше: любой диапазон обслуживается из памяти, вставка вне порядка сохраняет сортировку
+    public void completeTable_servesAnyRange() {
+        RecentTicksCache cache = new RecentTicksCache(10, 0);
+        assertThat(cache.range(0, NOW, 10)).isNull(); // До загрузки — только БД
+
+        cache.load(new long[]{NOW - 1, NOW - 5}, 2, true, NOW);
+        cache.add(new long[]{NOW, NOW - 3, NOW}, 3, NOW);
+
+        assertThat(cache.range(Long.MIN_VALUE, Long.MAX_VALUE, 10)).containsExactly(NOW - 5, NOW - 3, NOW - 1, NOW);
+        assertThat(cache.range(NOW - 3, NOW, 10)).containsExactly(NOW - 3, NOW - 1); // Верхняя граница не включается
+        assertThat(cache.range(Long.MIN_VALUE, Long.MAX_VALUE, 2)).containsExactly(NOW - 5, NOW - 3);
+        assertThat(cache.latest()).hasValue(NOW);
+    }
+
+    @Test // Вытеснение по размеру сдвигает границу покрытия: более старые диапазоны уходят в БД
+    public void evictionBySize_movesCoverage() {
+        RecentTicksCache cache = new RecentTicksCache(3, 0);
+        cache.load(new long[0], 0, true, NOW);
+        long version = cache.version();
+
+        cache.add(new long[]{1, 2, 3, 4, 5}, 5, NOW);
+
+        assertThat(cache.version()).isGreaterThan(version);
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.range(3, 10, 10)).containsExactly(3, 4, 5);
+        assertThat(cache.range(2, 10, 10)).isNull();
+        cache.add(new long[]{1}, 1, NOW); // Старая метка в кэш не попадает, но версия меняется
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test // Метки старше max-age вытесняются; неполная загрузка покрывает только прочитанный хвост
+    public void evictionByAge_andPartialLoad() {
+        RecentTicksCache cache = new RecentTicksCache(100, 60);
+        cache.load(new long[]{NOW - 120, NOW - 30, NOW - 10}, 3, false, NOW);
+
+        assertThat(cache.range(NOW - 120, NOW, 10)).isNull();
+        assertThat(cache.range(NOW - 119, NOW, 10)).containsExactly(NOW - 30, NOW - 10);
+
+        cache.add(new long[]{NOW + 100}, 1, NOW + 100); // Через 100 секунд всё прежнее старше минуты
+        assertThat(cache.range(NOW - 10, NOW + 200, 10)).isNull();
+        assertThat(cache.range(NOW - 9, NOW + 200, 10)).containsExactly(NOW + 100);
+    }
+
+    @Test // До загрузки (БД недоступна при старте) кэш не растёт сверх capacity; вытесненное не попадает в покрытие
+    public void beforeLoad_staysBoundedAndLoadKeepsEvictedOut() {
+        RecentTicksCache cache = new RecentTicksCache(3, 0);
+        for (long s = 1; s <= 100; s++) cache.add(new long[]{s}, 1, NOW);
+
+        assertThat(cache.isLoaded()).isFalse();
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.range(98, 101, 10)).isNull();
+
+        cache.load(new long[]{96, 97, 98, 99, 100}, 5, true, NOW); // Повторная загрузка после восстановления БД
+        assertThat(cache.isLoaded()).isTrue();
+        assertThat(cache.range(98, 101, 10)).containsExactly(98, 99, 100);
+        assertThat(cache.range(97, 101, 10)).isNull();
+    }
+
+    @Test // Удаление по сроку хранения убирает старые метки и меняет версию (ETag)
+    public void removeBefore_dropsExpiredAndChangesVersion() {
+        RecentTicksCache cache = new RecentTicksCache(10, 0);
+        cache.load(new long[]{1, 2, 3, 4}, 4, true, NOW);
+        long version = cache.version();
+
+        cache.removeBefore(3);
+
+        assertThat(cache.version()).isGreaterThan(version);
+        assertThat(cache.range(Long.MIN_VALUE, Long.MAX_VALUE, 10)).containsExactly(3, 4);
+        cache.removeBefore(10);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.latest()).isEmpty();
+    }
+}
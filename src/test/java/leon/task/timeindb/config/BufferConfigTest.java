@@ -0,0 +1,25 @@
+package leon.task.timeindb.config;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BufferConfigTest {
+
+    @Test // Полосы по умолчанию: по ядрам, но в пределах пула за вычетом дозаписи и фоновой записи
+    public void sourceStripes_defaultFitsConnectionBudget() {
+        assertThat(BufferConfig.sourceStripes(0, 8, 5, 3)).isEqualTo(1); // Поставляемые настройки: пул 5, дозапись 3
+        assertThat(BufferConfig.sourceStripes(0, 8, 20, 3)).isEqualTo(8);
+        assertThat(BufferConfig.sourceStripes(0, 8, 5, 0)).isEqualTo(4); // Дозапись выключена
+    }
+
+    @Test // Явное значение сверх бюджета и слишком маленький пул отклоняются при старте
+    public void sourceStripes_rejectsOverBudget() {
+        assertThat(BufferConfig.sourceStripes(2, 8, 10, 3)).isEqualTo(2);
+        assertThatThrownBy(() -> BufferConfig.sourceStripes(2, 8, 5, 3))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("app.sources.stripes=2");
+        assertThatThrownBy(() -> BufferConfig.sourceStripes(0, 8, 4, 3))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("maximum-pool-size=4");
+    }
+}
@@ -0,0 +1,47 @@
+package leon.task.timeindb.controller;
+
+import leon.task.timeindb.export.TickFormat;
+import leon.task.timeindb.service.TickIndexService;
+import leon.task.timeindb.service.TickQueryService;
+import leon.task.timeindb.service.TickRollupService;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class TimeControllerTest {
+
+    private final TickIndexService index = mock(TickIndexService.class);
+    private final TimeController controller = new TimeController(mock(TickQueryService.class),
+            mock(TickRollupService.class), index);
+
+    @Test // Несколько экземпляров пишут в БД: индекс видит не все метки, поэтому пропуски не отдаются
+    public void gaps_unavailableWithMultipleWriters() {
+        ReflectionTestUtils.setField(controller, "singleWriter", false);
+
+        assertThatThrownBy(() -> controller.gaps(Instant.EPOCH, Instant.EPOCH.plusSeconds(60)))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    @Test // Зона меняет тело ответа, поэтому входит в ETag: 304 не отдаёт представление в чужой зоне
+    public void etag_variesByFormatAndZone() {
+        String base = "\"b-7\"";
+        ZoneId tokyo = ZoneId.of("Asia/Tokyo");
+
+        assertThat(TimeController.etag(base, TickFormat.JSON, null)).isEqualTo(base); // Общий с /ticks/latest
+        assertThat(TimeController.etag(base, TickFormat.JSON, tokyo)).isEqualTo("\"b-7-json-Asia/Tokyo\"");
+        assertThat(TimeController.etag(base, TickFormat.CSV, null)).isEqualTo("\"b-7-csv\"");
+        assertThat(TimeController.etag(base, TickFormat.CSV, ZoneId.of("+03:00"))).isEqualTo("\"b-7-csv-+03:00\"");
+        assertThat(TimeController.notModified(TimeController.etag(base, TickFormat.JSON, ZoneId.of("UTC")),
+                TimeController.etag(base, TickFormat.JSON, tokyo))).isFalse();
+        assertThat(TimeController.etag(null, TickFormat.CSV, tokyo)).isNull();
+    }
+}
@@ -0,0 +1,76 @@
+package leon.task.timeindb.export;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TickEncoderTest {
+
+    private static final Instant T0 = Instant.parse("2025-09-15T10:00:00Z");
+    private static final List<Instant> TICKS = List.of(T0, T0.plusSeconds(1), T0.plusMillis(2500));
+
+    @Test // Тест проверяет текстовые форматы: epoch seconds с долями, строки в зоне, заголовок CSV
+    public void textFormats() throws IOException {
+        ZonedTickFormatter utc = new ZonedTickFormatter(ZoneId.of("UTC"));
+
+        assertThat(encode(TickFormat.EPOCH_JSON, null)).isEqualTo("[1757930400,1757930401,1757930402.5]");
+        assertThat(encode(TickFormat.NDJSON, null)).isEqualTo("1757930400\n1757930401\n1757930402.5\n");
+        assertThat(encode(TickFormat.NDJSON, utc)).startsWith("\"2025-09-15T10:00Z[UTC]\"\n\"2025-09-15T10:00:01Z[UTC]\"\n");
+        assertThat(encode(TickFormat.CSV, null)).isEqualTo("created_at\n1757930400\n1757930401\n1757930402.5\n");
+        assertThat(encode(TickFormat.JSON, utc))
+                .isEqualTo("[\"2025-09-15T10:00Z[UTC]\",\"2025-09-15T10:00:01Z[UTC]\",\"2025-09-15T10:00:02.500Z[UTC]\"]");
+    }
+
+    @Test // Тест проверяет varint-дельты: 1 байт на метку при шаге в секунду, обратное декодирование, шаг назад
+    public void binaryVarintDeltas() throws IOException {
+        List<Instant> ticks = List.of(T0, T0.plusSeconds(1), T0.plusSeconds(2), T0.plusSeconds(100_000), T0.minusSeconds(5));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TickEncoder encoder = TickEncoder.open(TickFormat.BINARY, out, null);
+        for (Instant ts : ticks) encoder.write(ts);
+        encoder.finish();
+
+        byte[] data = out.toByteArray();
+        assertThat(data).hasSize(5 + 1 + 1 + 3 + 3); // Первая метка — 5 байт, соседние — по 1
+        assertThat(TickEncoder.decodeVarintDeltas(data)).containsExactly(ticks.stream().mapToLong(Instant::getEpochSecond).toArray());
+    }
+
+    @Test // Тест проверяет, что строки совпадают с ZonedDateTime.toString() по обе стороны перехода на летнее время
+    public void zonedFormatterMatchesZonedDateTime() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        ZonedTickFormatter formatter = new ZonedTickFormatter(berlin);
+        Instant transition = Instant.parse("2025-03-30T01:00:00Z");
+        for (long s = -3; s <= 3; s++) {
+            Instant ts = transition.plusSeconds(s);
+            assertThat(formatter.format(ts)).isEqualTo(ZonedDateTime.ofInstant(ts, berlin).toString());
+        }
+        ZonedTickFormatter offset = new ZonedTickFormatter(ZoneOffset.ofHours(3));
+        assertThat(offset.format(T0)).isEqualTo(ZonedDateTime.ofInstant(T0, ZoneOffset.ofHours(3)).toString());
+    }
+
+    @Test // Тест проверяет выбор формата по Accept с учётом q и значение по умолчанию
+    public void negotiate() {
+        assertThat(TickFormat.negotiate(null)).isEqualTo(TickFormat.JSON);
+        assertThat(TickFormat.negotiate("*/*")).isEqualTo(TickFormat.JSON);
+        assertThat(TickFormat.negotiate("text/csv")).isEqualTo(TickFormat.CSV);
+        assertThat(TickFormat.negotiate("application/json;q=0.5, application/octet-stream")).isEqualTo(TickFormat.BINARY);
+        assertThat(TickFormat.negotiate("image/png, application/x-ndjson;q=0.1")).isEqualTo(TickFormat.NDJSON);
+        assertThat(TickFormat.negotiate("not a type")).isEqualTo(TickFormat.JSON);
+    }
+
+    private static String encode(TickFormat format, ZonedTickFormatter zone) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TickEncoder encoder = TickEncoder.open(format, out, zone);
+        for (Instant ts : TICKS) encoder.write(ts);
+        encoder.finish();
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,101 @@
+package leon.task.timeindb.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SecondBitmapTest {
+
+    private static final long DAY = SecondBitmap.SECONDS_PER_DAY;
+
+    @Test // Пропуски внутри суток, до первой и после последней метки
+    public void gaps_withinDay() {
+        SecondBitmap bitmap = new SecondBitmap();
+        bitmap.add(2);
+        bitmap.add(3);
+        bitmap.add(7);
+
+        List<long[]> gaps = new ArrayList<>();
+        long missing = bitmap.gaps(0, 10, (s, e) -> gaps.add(new long[]{s, e}));
+
+        assertThat(gaps).containsExactly(new long[]{0, 2}, new long[]{4, 7}, new long[]{8, 10});
+        assertThat(missing).isEqualTo(7);
+    }
+
+    @Test // Пустые сутки и граница суток дают один склеенный пропуск; до 1970 года сутки считаются так же
+    public void gaps_acrossDaysAreMerged() {
+        SecondBitmap bitmap = new SecondBitmap();
+        bitmap.add(-DAY + 10);     // Сутки до эпохи
+        bitmap.add(2 * DAY + 5);   // Между ними — сутки 0 и 1 без меток
+
+        List<long[]> gaps = new ArrayList<>();
+        bitmap.gaps(-DAY, 3 * DAY, (s, e) -> gaps.add(new long[]{s, e}));
+
+        assertThat(gaps).containsExactly(
+                new long[]{-DAY, -DAY + 10},
+                new long[]{-DAY + 11, 2 * DAY + 5},
+                new long[]{2 * DAY + 6, 3 * DAY});
+    }
+
+    @Test // Плотные сутки переводятся из массива в битовую карту без потери данных
+    public void denseDay_switchesToBitmap() {
+        SecondBitmap bitmap = new SecondBitmap();
+        for (long s = 0; s < DAY; s += 2) {
+            bitmap.add(s); // 43 200 меток через секунду — больше ARRAY_MAX
+        }
+        assertThat(bitmap.add(0)).isFalse(); // Повторное добавление ничего не меняет
+        assertThat(bitmap.cardinality()).isEqualTo(DAY / 2);
+        assertThat(bitmap.sizeInBytes()).isEqualTo(DAY / 8);
+        assertThat(bitmap.contains(100)).isTrue();
+        assertThat(bitmap.contains(101)).isFalse();
+
+        List<long[]> gaps = new ArrayList<>();
+        long missing = bitmap.gaps(0, DAY, (s, e) -> gaps.size() < 3 && gaps.add(new long[]{s, e}));
+        assertThat(gaps).containsExactly(new long[]{1, 2}, new long[]{3, 4}, new long[]{5, 6});
+        assertThat(missing).isEqualTo(DAY / 2); // Счёт продолжается и после остановки перебора
+    }
+
+    @Test // Удаление по сроку хранения убирает сутки раньше границы и начало суток, в которые она попадает
+    public void removeBefore_dropsWholeDaysAndPartialDay() {
+        SecondBitmap bitmap = new SecondBitmap();
+        bitmap.add(5);
+        bitmap.add(DAY + 5);
+        bitmap.add(DAY + 10);
+
+        bitmap.removeBefore(DAY + 10);
+
+        assertThat(bitmap.contains(5)).isFalse();
+        assertThat(bitmap.contains(DAY + 5)).isFalse(); // Строки этой секунды удалены из БД — повтор должен записаться
+        assertThat(bitmap.contains(DAY + 10)).isTrue();
+        assertThat(bitmap.cardinality()).isEqualTo(1);
+        assertThat(bitmap.gaps(DAY, DAY + 10, (s, e) -> true)).isEqualTo(10);
+    }
+
+    @Test // Частичное удаление в плотных сутках (битовая карта) и удаление суток, ставших пустыми
+    public void removeBefore_partialBitmapDay() {
+        SecondBitmap bitmap = new SecondBitmap();
+        for (int s = 0; s < SecondBitmap.ARRAY_MAX + 100; s++) bitmap.add(DAY + s);
+
+        bitmap.removeBefore(DAY + 1000);
+
+        assertThat(bitmap.contains(DAY + 999)).isFalse();
+        assertThat(bitmap.contains(DAY + 1000)).isTrue();
+        assertThat(bitmap.cardinality()).isEqualTo(SecondBitmap.ARRAY_MAX + 100 - 1000);
+        bitmap.removeBefore(2 * DAY);
+        assertThat(bitmap.cardinality()).isZero();
+        assertThat(bitmap.sizeInBytes()).isZero();
+    }
+
+    @Test // Пакетная проверка: отмечаются только присутствующие секунды, в том числе из разных суток
+    public void containsAll_marksPresentSeconds() {
+        SecondBitmap bitmap = new SecondBitmap();
+        bitmap.add(5);
+        bitmap.add(DAY + 1);
+
+        long[] seconds = {5, 6, DAY + 1, -1, 5};
+        assertThat(bitmap.containsAll(seconds, 4).stream().toArray()).containsExactly(0, 2);
+    }
+}
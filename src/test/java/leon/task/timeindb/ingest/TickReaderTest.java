@@ -0,0 +1,62 @@
+package leon.task.timeindb.ingest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TickReaderTest {
+
+    @Test // Тест проверяет разбор NDJSON: числа, дробные секунды, строки ISO-8601, пустые строки и порции
+    public void ndjson_parsesNumbersAndIsoStrings() throws IOException {
+        String body = "1757894400\n1757894401.9\r\n\n  \"2025-09-15T00:00:02Z\"  \n-0.5\n1757894403";
+        TickReader reader = new NdjsonTickReader(stream(body));
+        long[] out = new long[3];
+
+        assertThat(reader.read(out, 3)).isEqualTo(3);
+        assertThat(out).containsExactly(1757894400L, 1757894401L, 1757894402L);
+        assertThat(reader.read(out, 3)).isEqualTo(2);
+        assertThat(out).startsWith(-1L, 1757894403L); // Дробная часть отбрасывается вниз, как truncatedTo(SECONDS)
+        assertThat(reader.read(out, 3)).isZero();
+    }
+
+    @Test // Тест проверяет, что метки до ошибки отдаются, а ошибка разбора указывает номер строки
+    public void ndjson_reportsLineOfMalformedValue() throws IOException {
+        TickReader reader = new NdjsonTickReader(stream("1\n\n2 x\n"));
+        long[] out = new long[10];
+
+        assertThat(reader.read(out, 10)).isEqualTo(1);
+        assertThatThrownBy(() -> reader.read(out, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("строка 3");
+        assertThatThrownBy(() -> new NdjsonTickReader(stream("\"2025-13-01T00:00:00Z\"")).read(out, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new NdjsonTickReader(stream("999999999999999")).read(out, 10))
+                .hasMessageContaining("вне диапазона");
+    }
+
+    @Test // Тест проверяет чтение int64 big-endian и отказ на неполном последнем значении
+    public void binary_readsLongsAndRejectsTail() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(3 * Long.BYTES + 3);
+        buf.putLong(10).putLong(20).putLong(30).put(new byte[3]);
+        TickReader reader = new BinaryTickReader(new ByteArrayInputStream(buf.array()));
+        long[] out = new long[2];
+
+        assertThat(reader.read(out, 2)).isEqualTo(2);
+        assertThat(out).containsExactly(10, 20);
+        assertThat(reader.read(out, 2)).isEqualTo(1);
+        assertThat(out[0]).isEqualTo(30);
+        assertThatThrownBy(() -> reader.read(out, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("не кратна 8");
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
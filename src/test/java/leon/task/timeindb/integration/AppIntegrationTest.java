@@ -1,16 +1,29 @@
 package leon.task.timeindb.integration;
 
+import leon.task.timeindb.export.TickEncoder;
 import leon.task.timeindb.repository.TimeRepository;
+import leon.task.timeindb.service.BatchResult;
+import leon.task.timeindb.service.BatchWriterService;
 import leon.task.timeindb.service.TimeService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @RunWith(SpringRunner.class) // Запускает тест с поддержкой Spring контекста
@@ -22,7 +35,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         "spring.datasource.username=sa",  // Имя пользователя для H2 (стандартное)
         "spring.datasource.password=",  // Пароль для H2 (пустой)
         "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect", // Диалект Hibernate для H2 базы данных
+        "app.writer.copy-threshold=2", // Порог COPY ниже размера батчей в тестах: на H2 запись должна остаться на MERGE
         "app.buffer-capacity=3", // Кастомное свойство: емкость буфера для временных меток
+        "app.generator.enabled=false", // Метки создаются только тестами: чужие коммиты не меняют ETag и содержимое буфера
         "app.time-zone=UTC"  // Кастомное свойство: временная зона приложения
 })
 @AutoConfigureMockMvc // Автоматическая настройка MockMvc для тестирования веб-слоя
@@ -31,6 +46,8 @@ public class AppIntegrationTest {
     @Autowired private MockMvc mvc;  // Внедрение MockMvc для тестирования HTTP endpoints
     @Autowired private TimeService timeService; // Внедрение сервиса для тестирования бизнес-логики
     @Autowired private TimeRepository repo; // Внедрение репозитория для проверки состояния БД
+    @Autowired private JdbcTemplate jdbc; // Проверка строк других источников, которых нет в выборках репозитория
+    @Autowired private BatchWriterService writer; // Внедрение сервиса пакетной записи (режим jdbc из application.yaml)
 
     @Test // Тестовый метод для сквозного (end-to-end) тестирования
     public void ticks_endpoint_e2e() throws Exception {
@@ -43,5 +60,209 @@ public class AppIntegrationTest {
         mvc.perform(get("/ticks")) // Выполнение HTTP GET запроса к endpoint /ticks
                 .andExpect(status().isOk()) // Проверка, что статус ответа 200 OK
                 .andExpect(content().contentType("application/json"));  // Проверка, что Content-Type соответствует application/json
+
+        mvc.perform(get("/actuator/health")) // Запись в БД идёт штатно — автомат доступности закрыт
+                .andExpect(jsonPath("$.components.dbCircuit.status").value("UP"))
+                .andExpect(jsonPath("$.components.dbCircuit.details.state").value("CLOSED"));
+    }
+
+    @Test // Тест проверяет многострочную запись: дубли отбрасывает БД, счетчики берутся из результата запроса
+    public void insertBatch_setBased_countsDuplicatesFromDb() {
+        Instant t1 = Instant.parse("2001-01-01T00:00:00Z");
+        Instant t2 = Instant.parse("2001-01-01T00:00:01Z");
+
+        BatchResult first = writer.insertBatch(List.of(t1, t2, t1)); // Повтор внутри батча
+        BatchResult second = writer.insertBatch(List.of(t1, t2));    // Повтор уже записанных меток
+
+        assertThat(first.getInserted()).isEqualTo(2);
+        assertThat(first.getDuplicates()).isEqualTo(1);
+        assertThat(second.getInserted()).isZero();
+        assertThat(second.getDuplicates()).isEqualTo(2);
+    }
+
+    @Test // Тест проверяет диапазон, keyset-курсор и потоковую выгрузку /ticks
+    public void ticks_rangeKeysetAndStream() throws Exception {
+        Instant t1 = Instant.parse("2002-01-01T00:00:00Z");
+        Instant t2 = Instant.parse("2002-01-01T00:00:01Z");
+        Instant t3 = Instant.parse("2002-01-01T00:00:02Z");
+        writer.insertBatch(List.of(t1, t2, t3));
+
+        // Первая страница из двух элементов содержит курсор на следующую
+        mvc.perform(get("/ticks").param("from", "2002-01-01T00:00:00Z").param("to", "2002-01-02T00:00:00Z").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string("X-Next-After", t2.toString()));
+
+        // Вторая страница по курсору after
+        mvc.perform(get("/ticks").param("from", "2002-01-01T00:00:00Z").param("to", "2002-01-02T00:00:00Z")
+                        .param("after", t2.toString()).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value("2002-01-01T00:00:02Z[UTC]"))
+                .andExpect(header().doesNotExist("X-Next-After"));
+
+        // Потоковая выгрузка того же диапазона
+        var async = mvc.perform(get("/ticks/stream").param("from", "2002-01-01T00:00:00Z").param("to", "2002-01-02T00:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[\"2002-01-01T00:00Z[UTC]\",\"2002-01-01T00:00:01Z[UTC]\",\"2002-01-01T00:00:02Z[UTC]\"]"));
+    }
+
+    @Test // Тест проверяет выбор формата выгрузки по Accept: NDJSON, CSV в зоне, бинарные дельты, отдельный ETag
+    public void ticks_negotiatedFormats() throws Exception {
+        Instant t1 = Instant.parse("2006-01-01T00:00:00Z");
+        writer.insertBatch(List.of(t1, t1.plusSeconds(1), t1.plusSeconds(3)));
+        String from = t1.toString();
+        String to = t1.plusSeconds(10).toString();
+
+        mvc.perform(get("/ticks").param("from", from).param("to", to).accept("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(header().string("ETag", endsWith("-ndjson\"")))
+                .andExpect(content().string("1136073600\n1136073601\n1136073603\n"));
+        mvc.perform(get("/ticks").param("from", from).param("to", to).param("zone", "+03:00").accept("text/csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("created_at\n2006-01-01T03:00+03:00\n2006-01-01T03:00:01+03:00\n2006-01-01T03:00:03+03:00\n"));
+
+        var async = mvc.perform(get("/ticks/stream").param("from", from).param("to", to).accept("application/octet-stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/octet-stream"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(TickEncoder.decodeVarintDeltas(body)).containsExactly(1136073600L, 1136073601L, 1136073603L);
+    }
+
+    @Test // Тест проверяет статистику /ticks/stats: счётчики растут только на новые метки, сутки собираются из часов
+    public void ticks_statsFromRollup() throws Exception {
+        Instant t1 = Instant.parse("2003-01-01T10:00:00Z");
+        Instant t2 = Instant.parse("2003-01-01T10:00:30Z");
+        Instant t3 = Instant.parse("2003-01-01T11:15:00Z");
+        writer.insertBatch(List.of(t1, t2));
+        writer.insertBatch(List.of(t2, t3)); // t2 — дубль, в статистику не попадает
+
+        mvc.perform(get("/ticks/stats").param("granularity", "minute")
+                        .param("from", "2003-01-01T10:00:10Z").param("to", "2003-01-01T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value("2003-01-01T10:00Z[UTC]")) // Диапазон выровнен по минутам
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.buckets.length()").value(2))
+                .andExpect(jsonPath("$.buckets[0].start").value("2003-01-01T10:00Z[UTC]"))
+                .andExpect(jsonPath("$.buckets[0].count").value(2))
+                .andExpect(jsonPath("$.buckets[1].start").value("2003-01-01T11:15Z[UTC]"))
+                .andExpect(jsonPath("$.buckets[1].count").value(1));
+
+        mvc.perform(get("/ticks/stats").param("granularity", "day")
+                        .param("from", "2003-01-01T00:00:00Z").param("to", "2003-01-02T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets.length()").value(1))
+                .andExpect(jsonPath("$.buckets[0].count").value(3))
+                .andExpect(jsonPath("$.coverage").value(3.0 / 86400));
+
+        mvc.perform(get("/ticks/stats").param("granularity", "week"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test // Тест проверяет /ticks/gaps: пропуски берутся из индекса полноты, обновлённого после коммита батча
+    public void ticks_gapsFromIndex() throws Exception {
+        Instant base = Instant.parse("2004-01-01T00:00:00Z");
+        writer.insertBatch(List.of(base.plusSeconds(2), base.plusSeconds(3), base.plusSeconds(7)));
+
+        long us = base.getEpochSecond() * 1_000_000L;
+        mvc.perform(get("/ticks/gaps").param("from", base.toString()).param("to", base.plusSeconds(10).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value(us))
+                .andExpect(jsonPath("$.missingSeconds").value(7))
+                .andExpect(jsonPath("$.truncated").value(false))
+                .andExpect(jsonPath("$.gaps.length()").value(3))
+                .andExpect(jsonPath("$.gaps[1][0]").value(us + 4_000_000L))
+                .andExpect(jsonPath("$.gaps[1][1]").value(us + 7_000_000L));
+    }
+
+    @Test // Тест проверяет опрос свежих меток: since и /ticks/latest из кэша, 304 по If-None-Match до следующего коммита
+    public void ticks_sinceLatestAndEtag() throws Exception {
+        Instant t1 = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(3600); // Заведомо новее прочих меток тестов
+        Instant t2 = t1.plusSeconds(1);
+        writer.insertBatch(List.of(t1, t2));
+
+        String etag = mvc.perform(get("/ticks").param("since", t1.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value(ZonedDateTime.ofInstant(t2, ZoneId.of("UTC")).toString()))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).isNotBlank();
+
+        mvc.perform(get("/ticks").param("since", t1.toString()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/ticks/latest").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        Instant t3 = t2.plusSeconds(1);
+        writer.insertBatch(List.of(t3)); // Новый коммит меняет ETag
+        mvc.perform(get("/ticks/latest").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value(ZonedDateTime.ofInstant(t3, ZoneId.of("UTC")).toString()));
+    }
+
+    @Test // Тест проверяет POST /ticks: приём в буфер, 429 с числом принятых меток при нехватке места, 400 на ошибке разбора
+    public void ticks_ingestWithBackpressure() throws Exception {
+        timeService.backgroundFlush(); // Буфер (ёмкость 3) пуст перед проверкой
+        long base = Instant.parse("2005-01-01T00:00:00Z").getEpochSecond();
+
+        mvc.perform(post("/ticks").contentType("application/x-ndjson").content(base + "\n\"2005-01-01T00:00:01Z\"\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.error").doesNotExist());
+        timeService.backgroundFlush();
+        assertThat(ingested(base, base + 10)).containsExactly(Instant.ofEpochSecond(base), Instant.ofEpochSecond(base + 1));
+
+        StringBuilder many = new StringBuilder();
+        for (int i = 2; i < 12; i++) many.append(base + i).append('\n');
+        mvc.perform(post("/ticks").contentType("application/x-ndjson").content(many.toString()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                // Принято ровно столько, сколько свободно в буфере; клиент повторяет начиная с позиции accepted
+                .andExpect(jsonPath("$.accepted").value(3));
+        timeService.backgroundFlush();
+
+        mvc.perform(post("/ticks").contentType("application/x-ndjson").content(base + 20 + "\nabc\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.error").value("строка 2: ожидается число или строка в кавычках"));
+        timeService.backgroundFlush();
+        assertThat(ingested(base + 20, base + 21)).hasSize(1); // Метка до ошибочной строки записана
+    }
+
+    @Test // Тест проверяет POST /ticks?source=N: полоса источника пишется отдельным потоком, ключ (source, created_at)
+    public void ticks_ingestPerSource() throws Exception {
+        long base = Instant.parse("2007-01-01T00:00:00Z").getEpochSecond();
+        String body = base + "\n" + (base + 1) + "\n" + base + "\n";
+
+        mvc.perform(post("/ticks?source=7").contentType("application/x-ndjson").content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(3));
+        mvc.perform(post("/ticks").contentType("application/x-ndjson").content(base + "\n"))
+                .andExpect(status().isOk());
+        timeService.backgroundFlush();
+        assertThat(ingested(base, base + 10)).containsExactly(Instant.ofEpochSecond(base)); // Только источник 0
+
+        long written = 0; // Полосу источника пишет свой поток SourceWriterService — ждём его батч
+        for (int attempt = 0; attempt < 50 && written < 2; attempt++) {
+            if (attempt > 0) Thread.sleep(100);
+            written = jdbc.queryForObject("SELECT COUNT(*) FROM time_entity WHERE source = 7", Long.class);
+        }
+        assertThat(written).isEqualTo(2); // Та же секунда у двух источников — две строки, повтор внутри источника отброшен
+
+        mvc.perform(post("/ticks?source=-1").contentType("application/x-ndjson").content(base + "\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted").value(0));
+    }
+
+    private List<Instant> ingested(long from, long to) {
+        return repo.findRange(Instant.ofEpochSecond(from), Instant.ofEpochSecond(to), PageRequest.of(0, 100));
     }
 }
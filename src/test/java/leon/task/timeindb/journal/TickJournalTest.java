@@ -0,0 +1,88 @@
+package leon.task.timeindb.journal;
+
+import leon.task.timeindb.buffer.RingTickBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TickJournalTest {
+
+    @Rule // Временный каталог для файлов журнала, удаляется после теста
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test // Тест проверяет, что неподтверждённые метки переживают перезапуск и воспроизводятся по порядку
+    public void uncommittedTicks_surviveReopenInOrder() throws Exception {
+        Path file = tmp.getRoot().toPath().resolve("ticks.journal");
+        RingTickBuffer buffer = new RingTickBuffer(10);
+        buffer.offer(1);
+        buffer.offer(2);
+
+        try (TickJournal journal = TickJournal.open(file)) {
+            assertThat(journal.appendIfActive(0)).isFalse(); // Неактивный журнал метки не принимает
+            assertThat(journal.spill(buffer)).isEqualTo(2);  // Перенос буфера активирует журнал
+            assertThat(buffer.isEmpty()).isTrue();
+            assertThat(journal.appendIfActive(3)).isTrue();
+
+            long[] out = new long[10];
+            assertThat(journal.read(out, 1)).isEqualTo(1);
+            journal.commit(); // Метка 1 записана в БД
+            assertThat(journal.read(out, 10)).isEqualTo(2); // Прочитаны, но не подтверждены
+        }
+
+        try (TickJournal journal = TickJournal.open(file)) {
+            assertThat(journal.isActive()).isTrue();
+            assertThat(journal.pending()).isEqualTo(2);
+            long[] out = new long[10];
+            assertThat(journal.read(out, 10)).isEqualTo(2);
+            assertThat(out).startsWith(2, 3);
+
+            journal.commit(); // Всё записано — журнал обрезается и деактивируется
+            assertThat(journal.isActive()).isFalse();
+            assertThat(journal.pending()).isZero();
+        }
+        assertThat(Files.size(file)).isEqualTo(TickJournal.HEADER_SIZE);
+    }
+
+    @Test // Тест проверяет, что повреждённая запись и всё после неё отбрасываются при открытии
+    public void corruptedTail_isTruncatedOnOpen() throws Exception {
+        Path file = tmp.getRoot().toPath().resolve("ticks.journal");
+        RingTickBuffer buffer = new RingTickBuffer(10);
+        for (long s = 1; s <= 3; s++) buffer.offer(s);
+        try (TickJournal journal = TickJournal.open(file)) {
+            journal.spill(buffer);
+        }
+
+        // Порча значения третьей записи — CRC перестаёт совпадать
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(TickJournal.HEADER_SIZE + 2L * TickJournal.RECORD_SIZE);
+            raf.writeLong(42);
+        }
+
+        try (TickJournal journal = TickJournal.open(file)) {
+            assertThat(journal.pending()).isEqualTo(2);
+            long[] out = new long[10];
+            assertThat(journal.read(out, 10)).isEqualTo(2);
+            assertThat(out).startsWith(1, 2);
+        }
+    }
+
+    @Test // Тест проверяет, что после rewind() неудачно записанная пачка читается повторно
+    public void rewind_rereadsUncommittedBatch() throws Exception {
+        Path file = tmp.getRoot().toPath().resolve("ticks.journal");
+        RingTickBuffer buffer = new RingTickBuffer(10);
+        buffer.offer(5);
+        buffer.offer(6);
+        try (TickJournal journal = TickJournal.open(file)) {
+            journal.spill(buffer);
+            long[] out = new long[10];
+            assertThat(journal.read(out, 10)).isEqualTo(2);
+            journal.rewind(); // Запись в БД не удалась
+            assertThat(journal.read(out, 10)).isEqualTo(2);
+            assertThat(out).startsWith(5, 6);
+        }
+    }
+}
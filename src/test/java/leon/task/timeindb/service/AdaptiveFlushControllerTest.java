@@ -0,0 +1,38 @@
+package leon.task.timeindb.service;
+
+import org.junit.Test;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveFlushControllerTest {
+
+    private final AdaptiveFlushController flow = new AdaptiveFlushController(); // Значения по умолчанию: батч 500, 100..10000
+
+    @Test // Тест проверяет рост батча при быстром коммите и большой очереди и уменьшение при медленном
+    public void batchSize_followsCommitLatency() {
+        flow.onBatch(500, TimeUnit.MILLISECONDS.toNanos(10), 50_000);
+        assertThat(flow.batchSize()).isEqualTo(1000);
+
+        flow.onBatch(1000, TimeUnit.MILLISECONDS.toNanos(500), 50_000); // Коммит дольше целевых 200 мс
+        assertThat(flow.batchSize()).isEqualTo(500);
+
+        flow.onBatch(500, TimeUnit.MILLISECONDS.toNanos(10), 100); // Очередь меньше батча — рост не нужен
+        assertThat(flow.batchSize()).isEqualTo(500);
+
+        for (int i = 0; i < 10; i++) flow.onFailure();
+        assertThat(flow.batchSize()).isEqualTo(100); // Не ниже min-batch
+    }
+
+    @Test // Тест проверяет режим догонки: цикл без лимита, пока очередь не станет штатной
+    public void continueCycle_catchUpUntilSteadyBacklog() {
+        assertThat(flow.continueCycle(500, 100)).isTrue();     // Обычный режим: лимит 4 батча по 500
+        assertThat(flow.continueCycle(2000, 100)).isFalse();
+
+        assertThat(flow.continueCycle(2000, 100_000)).isTrue(); // Большая очередь — догонка
+        assertThat(flow.isCatchUp()).isTrue();
+        assertThat(flow.continueCycle(1_000_000, 1000)).isTrue();
+
+        assertThat(flow.continueCycle(1_000_000, 500)).isFalse(); // Очередь штатная — обычный лимит
+        assertThat(flow.isCatchUp()).isFalse();
+    }
+}
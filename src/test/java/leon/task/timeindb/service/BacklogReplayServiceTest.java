@@ -0,0 +1,139 @@
+package leon.task.timeindb.service;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.repository.SqlDialect;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BacklogReplayServiceTest {
+
+    @Mock
+    private BatchWriterService writer;
+    @Mock
+    private TickMetrics metrics;
+    @InjectMocks
+    private BacklogReplayService replay;
+
+    @After
+    public void tearDown() {
+        replay.shutdown();
+    }
+
+    @Test // Тест проверяет, что очередь делится на упорядоченные непересекающиеся партиции и пишется целиком
+    public void replay_writesDisjointSortedPartitions() {
+        configure(2);
+        Set<Instant> firsts = ConcurrentHashMap.newKeySet(); // Первая метка каждой партиции
+        when(writer.insertBatch(anyList())).thenAnswer(inv -> {
+            List<Instant> batch = inv.getArgument(0);
+            assertThat(batch).isSorted();
+            firsts.add(batch.get(0));
+            return new BatchResult(batch.size(), 0);
+        });
+
+        long[] ticks = {5, 1, 4, 2, 3};
+        ReplayResult result = replay.replay(ticks, ticks.length);
+
+        assertThat(result.isComplete()).isTrue();
+        assertThat(result.getWritten()).isEqualTo(5);
+        assertThat(firsts).containsExactlyInAnyOrder(
+                Instant.ofEpochSecond(1), Instant.ofEpochSecond(3), Instant.ofEpochSecond(5));
+        // Партиции видны в ticks.insert.latency и ticks.insert.rows, как батчи фоновой записи
+        verify(metrics, times(2)).batchWritten(eq(2), anyLong(), eq(new BatchResult(2, 0)));
+        verify(metrics).batchWritten(eq(1), anyLong(), any(BatchResult.class));
+    }
+
+    @Test // Тест проверяет повтор партиции и возврат неудачных партиций по возрастанию времени
+    public void replay_retriesAndReturnsFailedPartitionsInOrder() {
+        configure(2);
+        Set<Long> attemptedOnce = ConcurrentHashMap.newKeySet();
+        when(writer.insertBatch(anyList())).thenAnswer(inv -> {
+            List<Instant> batch = inv.getArgument(0);
+            long first = batch.get(0).getEpochSecond();
+            if (first == 1) throw new IllegalStateException("DB down"); // Первая партиция не пишется никогда
+            if (first == 3 && attemptedOnce.add(first)) throw new IllegalStateException("timeout"); // Вторая — со второй попытки
+            if (first == 5) throw new IllegalStateException("DB down");
+            return new BatchResult(batch.size(), 0);
+        });
+
+        long[] ticks = {6, 5, 4, 3, 2, 1};
+        ReplayResult result = replay.replay(ticks, ticks.length);
+
+        assertThat(result.isComplete()).isFalse();
+        assertThat(result.getWritten()).isEqualTo(2);
+        assertThat(result.getFailedPartitions()).isEqualTo(2);
+        assertThat(result.getFailedCount()).isEqualTo(4);
+        assertThat(result.getFailed()).startsWith(1, 2, 5, 6);
+    }
+
+    @Test // Настройки application.yaml: на PostgreSQL партиции дозаписи и крупнейший батч фоновой записи идут через COPY
+    public void defaultConfig_replayOnPostgresGoesThroughCopy() throws Exception {
+        Properties yaml = applicationYaml();
+        int backlog = Integer.parseInt(yaml.getProperty("app.replay.threshold")); // Наименьшая очередь параллельной дозаписи
+        int partitionSize = Integer.parseInt(yaml.getProperty("app.replay.partition-size"));
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.execute(ArgumentMatchers.<ConnectionCallback<String>>any())).thenReturn("PostgreSQL");
+        CopyBatchWriter copy = mock(CopyBatchWriter.class);
+        when(copy.copy(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        BatchWriterService batches = new BatchWriterService(null, jdbc, copy, mock(TickRollupService.class),
+                mock(ApplicationEventPublisher.class), new TickIndexService(null, null), metrics);
+        ReflectionTestUtils.setField(batches, "mode", WriteMode.valueOf(yaml.getProperty("app.writer.mode").toUpperCase()));
+        ReflectionTestUtils.setField(batches, "copyThreshold", Integer.parseInt(yaml.getProperty("app.writer.copy-threshold")));
+        BacklogReplayService defaults = new BacklogReplayService(batches, metrics);
+        ReflectionTestUtils.setField(defaults, "threads", Integer.parseInt(yaml.getProperty("app.replay.threads")));
+        ReflectionTestUtils.setField(defaults, "partitionSize", partitionSize);
+        defaults.init();
+        try {
+            long[] ticks = new long[backlog];
+            for (int i = 0; i < backlog; i++) ticks[i] = 1_700_000_000L + i;
+
+            assertThat(defaults.replay(ticks, backlog).isComplete()).isTrue();
+        } finally {
+            defaults.shutdown();
+        }
+        verify(copy, times((backlog + partitionSize - 1) / partitionSize)).copy(anyList());
+        verify(jdbc, times(0)).query(any(String.class), any(PreparedStatementSetter.class),
+                any(RowCallbackHandler.class)); // Ни одной партиции многострочным INSERT
+        assertThat(batches.useCopy(SqlDialect.POSTGRES, Integer.parseInt(yaml.getProperty("app.flush.max-batch")))).isTrue();
+    }
+
+    private static Properties applicationYaml() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yaml"));
+        return yaml.getObject();
+    }
+
+    // Маленькие партиции и без пауз между попытками
+    private void configure(int partitionSize) {
+        ReflectionTestUtils.setField(replay, "partitionSize", partitionSize);
+        ReflectionTestUtils.setField(replay, "retryDelayMs", 0L);
+        replay.init();
+    }
+}
@@ -1,16 +1,25 @@
 package leon.task.timeindb.service;
 
 import leon.task.timeindb.entity.TimeEntity;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.repository.SqlDialect;
 import leon.task.timeindb.repository.TimeRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 import java.time.Instant;
 import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -21,6 +30,16 @@ public class BatchWriterServiceTest {
 
     @Mock     // Создание мок-объекта для TimeRepository
     private TimeRepository repo;
+    @Mock     // JdbcTemplate нужен только для определения диалекта
+    private JdbcTemplate jdbc;
+    @Mock     // Счётчики статистики
+    private TickRollupService rollup;
+    @Mock     // Публикация события о вставленных метках
+    private ApplicationEventPublisher events;
+    @Spy      // Настоящий индекс полноты (без БД): фильтр уже записанных меток
+    private TickIndexService index = new TickIndexService(null, null);
+    @Mock     // Счётчик отсеянных повторов
+    private TickMetrics metrics;
     @InjectMocks    // Создание экземпляра тестируемого сервиса с внедренными моками
     private BatchWriterService service;
 
@@ -41,4 +60,59 @@ public class BatchWriterServiceTest {
         verify(repo, times(3)).save(any(TimeEntity.class)); // Проверка, что метод save был вызван ровно 3 раза (для каждой метки)
         verifyNoMoreInteractions(repo); // Проверка, что других взаимодействий с моком не было
     }
-}
\ No newline at end of file
+
+    @Test    // В статистику уходят только реально вставленные метки, дубликат пропускается
+    public void insertBatch_passesOnlyInsertedTicksToRollup() {
+        Instant t1 = Instant.parse("2025-09-15T00:00:00Z");
+        Instant t2 = Instant.parse("2025-09-15T00:00:01Z");
+        when(repo.save(any(TimeEntity.class)))
+                .thenAnswer(inv -> inv.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        BatchResult result = service.insertBatch(List.of(t1, t2));
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(1);
+        verify(rollup).apply(any(SqlDialect.class), eq(List.of(t1)));
+        verify(events).publishEvent(new TicksInsertedEvent(List.of(t1)));
+    }
+
+    @Test    // COPY выбирается только для PostgreSQL и только начиная с порога
+    public void useCopy_onlyForPostgresFromThreshold() {
+        ReflectionTestUtils.setField(service, "copyThreshold", 100);
+
+        assertThat(service.useCopy(SqlDialect.POSTGRES, 100)).isTrue();
+        assertThat(service.useCopy(SqlDialect.POSTGRES, 99)).isFalse();
+        assertThat(service.useCopy(SqlDialect.H2, 1_000_000)).isFalse(); // В H2 нет COPY — всегда MERGE
+    }
+
+    @Test    // Метки источников пишутся парами (source, created_at), дубли отбрасывает ключ таблицы
+    public void insertSourcesSql_conflictsOnSourceAndTime() {
+        assertThat(BatchWriterService.insertSourcesSql(SqlDialect.POSTGRES, 2)).isEqualTo(
+                "INSERT INTO time_entity (source, created_at) VALUES (?, ?),(?, ?) ON CONFLICT (source, created_at) DO NOTHING");
+        assertThat(BatchWriterService.insertSourcesSql(SqlDialect.H2, 1))
+                .startsWith("MERGE INTO time_entity t USING (VALUES (CAST(? AS INTEGER), CAST(? AS TIMESTAMP)))")
+                .contains("ON t.source = s.source AND t.created_at = s.created_at");
+    }
+
+    @Test    // Метки, уже известные индексу, отсеиваются до обращения к БД и учитываются как дубли
+    public void insertBatch_skipsTicksKnownToIndex() {
+        Instant t1 = Instant.parse("2025-09-15T00:00:00Z");
+        Instant t2 = Instant.parse("2025-09-15T00:00:01Z");
+        index.bitmap().add(t1.getEpochSecond());
+        ReflectionTestUtils.setField(index, "ready", true);
+        when(repo.save(any(TimeEntity.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        BatchResult result = service.insertBatch(List.of(t1, t2));
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(1);
+        verify(repo).save(argThat(e -> e.getCreatedAt().equals(t2))); // t1 в БД не отправлялась
+        verify(metrics).dedupSkipped(1);
+
+        index.bitmap().add(t2.getEpochSecond());
+        assertThat(service.insertBatch(List.of(t1, t2)).getDuplicates()).isEqualTo(2); // Весь батч известен — без БД
+        verify(repo, times(1)).save(any(TimeEntity.class));
+        verify(rollup, times(1)).apply(any(SqlDialect.class), any());
+    }
+}
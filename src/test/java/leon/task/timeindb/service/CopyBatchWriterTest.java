@@ -0,0 +1,133 @@
+package leon.task.timeindb.service;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CopyBatchWriterTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final Statement statement = mock(Statement.class);
+    private final CopyManager copyManager = mock(CopyManager.class);
+    private final CopyIn copyIn = mock(CopyIn.class);
+    private final ResultSet inserted = mock(ResultSet.class);
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream(); // Всё, что ушло в COPY
+    private final CopyBatchWriter writer = new CopyBatchWriter(dataSource);
+
+    // Цепочка DataSource -> Connection -> PGConnection/CopyManager -> CopyIn и Statement -> ResultSet без PostgreSQL
+    private void mockConnection() throws SQLException {
+        PGConnection pg = mock(PGConnection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(any(String.class))).thenReturn(copyIn);
+        doAnswer(inv -> {
+            copied.write(inv.<byte[]>getArgument(0), inv.<Integer>getArgument(1), inv.<Integer>getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(statement.executeQuery(any(String.class))).thenReturn(inserted);
+    }
+
+    @Test // Порядок команд: staging-таблица, COPY всех меток порциями, перенос с ON CONFLICT; вставленные — из RETURNING
+    public void copy_streamsTicksThenMovesNewOnes() throws Exception {
+        mockConnection();
+        List<Instant> ticks = new ArrayList<>();
+        StringBuilder csv = new StringBuilder();
+        Instant start = Instant.parse("2025-09-15T00:00:00Z");
+        for (int i = 0; i < 5000; i++) { // ~100 КБ CSV — больше одной порции COPY_CHUNK
+            ticks.add(start.plusSeconds(i));
+            csv.append(row(start.plusSeconds(i)));
+        }
+        when(inserted.next()).thenReturn(true, true, false);
+        when(inserted.getTimestamp(eq(1), any(Calendar.class)))
+                .thenReturn(Timestamp.from(start), Timestamp.from(start.plusSeconds(1)));
+
+        List<Instant> result = writer.copy(ticks);
+
+        InOrder order = inOrder(statement, copyManager, copyIn, connection);
+        order.verify(statement).execute("CREATE TEMP TABLE IF NOT EXISTS tick_staging"
+                + " (created_at timestamp NOT NULL) ON COMMIT DELETE ROWS");
+        order.verify(copyManager).copyIn("COPY tick_staging (created_at) FROM STDIN (FORMAT csv)");
+        order.verify(copyIn).endCopy();
+        order.verify(statement).executeQuery("INSERT INTO time_entity (created_at) SELECT created_at FROM tick_staging"
+                + " ON CONFLICT (source, created_at) DO NOTHING RETURNING created_at");
+        order.verify(connection).close(); // Без транзакции соединение возвращается в пул
+        verify(copyIn, never()).cancelCopy();
+        assertThat(copied.toString(StandardCharsets.US_ASCII)).isEqualTo(csv.toString());
+        assertThat(result).containsExactly(start, start.plusSeconds(1));
+    }
+
+    @Test // Ошибка посреди передачи: COPY отменяется, перенос не выполняется, соединение возвращается
+    public void copy_cancelsCopyOnWriteFailure() throws Exception {
+        mockConnection();
+        doThrow(new SQLException("broken pipe")).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(copyIn.isActive()).thenReturn(true);
+
+        assertThatThrownBy(() -> writer.copy(List.of(Instant.parse("2025-09-15T00:00:00Z"))))
+                .isInstanceOf(SQLException.class).hasMessage("broken pipe");
+
+        verify(copyIn).cancelCopy();
+        verify(statement, never()).executeQuery(any(String.class));
+        verify(connection).close();
+    }
+
+    @Test // Строка CSV в формате timestamp PostgreSQL, время в UTC
+    public void appendCsvRow_formatsUtcTimestamp() {
+        assertThat(row(Instant.parse("2025-09-15T03:04:05Z"))).isEqualTo("2025-09-15 03:04:05\n");
+        assertThat(row(Instant.parse("0001-01-01T00:00:00Z"))).isEqualTo("0001-01-01 00:00:00\n");
+        assertThat(row(Instant.parse("9999-12-31T23:59:59Z"))).isEqualTo("9999-12-31 23:59:59\n");
+    }
+
+    @Test // Доли секунды — микросекундами, наносекунды отбрасываются
+    public void appendCsvRow_writesMicros() {
+        assertThat(row(Instant.parse("2025-09-15T00:00:00.000120Z"))).isEqualTo("2025-09-15 00:00:00.000120\n");
+        assertThat(row(Instant.parse("2025-09-15T00:00:00.000000999Z"))).isEqualTo("2025-09-15 00:00:00\n");
+    }
+
+    @Test // Строки дописываются подряд и укладываются в MAX_ROW_BYTES
+    public void appendCsvRow_appendsAtPosition() {
+        byte[] buf = new byte[2 * CopyBatchWriter.MAX_ROW_BYTES];
+        int pos = CopyBatchWriter.appendCsvRow(buf, 0, Instant.parse("2025-09-15T00:00:00.999999Z"));
+        assertThat(pos).isLessThanOrEqualTo(CopyBatchWriter.MAX_ROW_BYTES);
+        pos = CopyBatchWriter.appendCsvRow(buf, pos, Instant.parse("2025-09-15T00:00:01Z"));
+
+        assertThat(new String(buf, 0, pos, StandardCharsets.US_ASCII))
+                .isEqualTo("2025-09-15 00:00:00.999999\n2025-09-15 00:00:01\n");
+    }
+
+    private static String row(Instant ts) {
+        byte[] buf = new byte[CopyBatchWriter.MAX_ROW_BYTES];
+        int len = CopyBatchWriter.appendCsvRow(buf, 0, ts);
+        return new String(buf, 0, len, StandardCharsets.US_ASCII);
+    }
+}
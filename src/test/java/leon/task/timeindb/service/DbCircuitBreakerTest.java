@@ -0,0 +1,98 @@
+package leon.task.timeindb.service;
+
+import org.junit.Test;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DbCircuitBreakerTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final DbCircuitBreaker breaker = new DbCircuitBreaker(dataSource); // По умолчанию: пауза 500..30000 мс, 3 пробных батча по 100
+
+    @Test // Тест проверяет паузу: удвоение с каждой неудачей, разброс от половины до полной, потолок backoff-max-ms
+    public void backoff_growsWithJitterUpToMax() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(breaker.backoffMs(1)).isBetween(250L, 500L);
+            assertThat(breaker.backoffMs(3)).isBetween(1000L, 2000L);
+            assertThat(breaker.backoffMs(40)).isBetween(15000L, 30000L);
+        }
+    }
+
+    @Test // Тест проверяет переходы: ошибка записи -> OPEN, проверка только после паузы, неудачная проверка продлевает паузу
+    public void probe_waitsForBackoffAndReusesConnection() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.isValid(anyInt())).thenReturn(false, true);
+
+        assertThat(breaker.onWriteFailure(0, "down")).isTrue();
+        assertThat(breaker.allowsWrites()).isFalse();
+        assertThat(breaker.probeDue(0)).isFalse();
+        assertThat(breaker.probeDue(500)).isTrue();
+
+        assertThat(breaker.probe(500)).isFalse(); // Соединение не прошло проверку — вторая пауза 500..1000 мс
+        assertThat(breaker.failures()).isEqualTo(2);
+        assertThat(breaker.nextProbeInMs(500)).isBetween(500L, 1000L);
+        assertThat(breaker.probe(2000)).isTrue();
+        assertThat(breaker.state()).isEqualTo(DbCircuitBreaker.State.HALF_OPEN);
+        verify(connection).close(); // Не прошедшее проверку соединение закрыто
+        verify(dataSource, times(2)).getConnection();
+    }
+
+    @Test // Тест проверяет пробную запись: ограничение батча, возврат в CLOSED после серии удач и в OPEN при ошибке
+    public void halfOpen_limitsBatchesUntilEnoughSuccesses() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLTransientConnectionException("refused"))
+                .thenReturn(mock(Connection.class, inv -> inv.getMethod().getName().equals("isValid") ? true : null));
+        breaker.onWriteFailure(0, "down");
+        assertThat(breaker.probe(1000)).isFalse();
+        assertThat(breaker.lastError()).isEqualTo("refused");
+        assertThat(breaker.probe(5000)).isTrue();
+
+        assertThat(breaker.limitBatch(500)).isEqualTo(100);
+        assertThat(breaker.onWriteSuccess()).isFalse();
+        assertThat(breaker.onWriteFailure(5000, "again")).isTrue(); // Ошибка пробного батча — снова OPEN
+        assertThat(breaker.failures()).isEqualTo(3);
+
+        assertThat(breaker.probe(60_000)).isTrue();
+        assertThat(breaker.onWriteSuccess()).isFalse();
+        assertThat(breaker.onWriteSuccess()).isFalse();
+        assertThat(breaker.onWriteSuccess()).isTrue();
+        assertThat(breaker.isClosed()).isTrue();
+        assertThat(breaker.failures()).isZero();
+        assertThat(breaker.limitBatch(500)).isEqualTo(500);
+    }
+
+    @Test(timeout = 10_000) // Тест проверяет, что долгая проверка не держит блокировку: health и ошибки записи не ждут isValid()
+    public void probe_doesNotBlockStateReadsWhileValidating() throws Exception {
+        CountDownLatch validating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.isValid(anyInt())).thenAnswer(inv -> {
+            validating.countDown();
+            release.await();
+            return true;
+        });
+        breaker.onWriteFailure(0, "down");
+        CompletableFuture<Boolean> probe = CompletableFuture.supplyAsync(() -> breaker.probe(1000));
+        validating.await();
+
+        assertThat(breaker.failures()).isEqualTo(1);
+        assertThat(breaker.nextProbeInMs(0)).isBetween(250L, 500L);
+        assertThat(breaker.onWriteFailure(1000, "late batch")).isFalse(); // Запоздавшая ошибка батча не ждёт проверку
+        assertThat(breaker.probe(1000)).isFalse(); // Вторая проверка одновременно с первой не начинается
+
+        release.countDown();
+        assertThat(probe.get()).isTrue();
+        assertThat(breaker.state()).isEqualTo(DbCircuitBreaker.State.HALF_OPEN);
+        verify(dataSource).getConnection();
+    }
+}
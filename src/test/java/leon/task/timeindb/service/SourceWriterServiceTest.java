@@ -0,0 +1,42 @@
+package leon.task.timeindb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import leon.task.timeindb.buffer.RingTickBuffer;
+import leon.task.timeindb.buffer.SourceTick;
+import leon.task.timeindb.buffer.StripedTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.metrics.TickMetrics;
+import org.junit.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SourceWriterServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StripedTickBuffer buffer = new StripedTickBuffer(2, 4);
+    private final SourceWriterService service = new SourceWriterService(mock(BatchWriterService.class), buffer,
+            new DbCircuitBreaker(null), new TickMetrics(registry, new RingTickBuffer(1), TickJournal.disabled()), registry);
+
+    @Test // Тест проверяет приём: метки упаковываются в полосу источника, без вытеснения и с учётом свободного места
+    public void ingest_packsIntoSourceStripe() {
+        assertThat(service.accepts(5, 0.5)).isTrue();
+        assertThat(service.ingest(5, new long[]{100, 101, 102, 103, 104}, 5)).isEqualTo(4); // Полоса на 4 метки
+        assertThat(service.accepts(5, 0.25)).isFalse();
+
+        TickBuffer stripe = buffer.stripeOf(5);
+        long[] out = new long[4];
+        assertThat(stripe.drainTo(out, 4)).isEqualTo(4);
+        assertThat(SourceTick.source(out[0])).isEqualTo(5);
+        assertThat(SourceTick.second(out[3])).isEqualTo(103);
+        assertThat(registry.get("ticks.sources.buffer.size").gauge().value()).isZero();
+    }
+
+    @Test // Тест проверяет удаление повторов из отсортированного батча перед записью
+    public void dedupe_keepsFirstOfEachRun() {
+        long[] batch = {1, 1, 2, 3, 3, 3, 9};
+        assertThat(SourceWriterService.dedupe(batch, batch.length)).isEqualTo(4);
+        assertThat(batch).startsWith(1, 2, 3, 9);
+        assertThat(SourceWriterService.dedupe(batch, 0)).isZero();
+    }
+}
@@ -0,0 +1,55 @@
+package leon.task.timeindb.service;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TickIndexServiceTest {
+
+    private static final Instant T = Instant.parse("2025-09-15T00:00:00Z");
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final DbCircuitBreaker breaker = mock(DbCircuitBreaker.class);
+    private final TickIndexService index = new TickIndexService(jdbc, breaker);
+
+    @Test // БД недоступна при старте: индекс загружается повтором после восстановления записи, а не после перезапуска
+    public void reload_loadsIndexOnceDatabaseIsBack() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getTimestamp(eq(1), any(Calendar.class))).thenReturn(Timestamp.from(T));
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .doAnswer(inv -> {
+                    inv.<RowCallbackHandler>getArgument(1).processRow(row);
+                    return null;
+                })
+                .when(jdbc).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        index.load();
+        assertThat(index.isReady()).isFalse();
+
+        when(breaker.isClosed()).thenReturn(false, true);
+        index.reload(); // Запись ещё не восстановлена — БД не трогаем
+        verify(jdbc, times(1)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        index.reload();
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.bitmap().contains(T.getEpochSecond())).isTrue();
+        index.reload(); // Индекс загружен — повторять нечего
+        verify(jdbc, times(2)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,60 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.cache.RecentTicksCache;
+import leon.task.timeindb.metrics.TickMetrics;
+import leon.task.timeindb.repository.TimeRepository;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class TickQueryServiceTest {
+
+    private static final Instant T = Instant.parse("2025-09-15T00:00:00Z");
+
+    private final TimeRepository repo = mock(TimeRepository.class);
+    private final RecentTicksCache cache = new RecentTicksCache(100, 0);
+    private final TickMetrics metrics = mock(TickMetrics.class);
+    private final TickQueryService queries = new TickQueryService(repo, cache, metrics, mock(DbCircuitBreaker.class));
+
+    @Test // Единственный экземпляр: свежие диапазоны и последняя метка — из кэша, ETag меняется с коммитом
+    public void singleWriter_servesFromCacheWithEtag() {
+        cache.load(new long[]{T.getEpochSecond()}, 1, true, T.getEpochSecond());
+        String etag = queries.etag();
+
+        assertThat(queries.page(TickQueryService.MIN, TickQueryService.MAX, null, 10)).containsExactly(T);
+        assertThat(queries.latest()).isEqualTo(T);
+        queries.onInserted(new TicksInsertedEvent(List.of(T.plusSeconds(1))));
+        assertThat(queries.etag()).isNotEqualTo(etag);
+        verifyNoInteractions(repo);
+    }
+
+    @Test // Несколько экземпляров: кэш не загружается и не пополняется, чтения идут в БД, ETag не выдаётся
+    public void multipleWriters_bypassCacheAndEtag() {
+        ReflectionTestUtils.setField(queries, "singleWriter", false);
+        when(repo.findRange(eq(TickQueryService.MIN), eq(TickQueryService.MAX), any(Pageable.class))).thenReturn(List.of(T));
+        when(repo.findLatest(any(Pageable.class))).thenReturn(List.of(T));
+
+        queries.loadCache();
+        queries.onInserted(new TicksInsertedEvent(List.of(T)));
+
+        assertThat(cache.isLoaded()).isFalse();
+        assertThat(cache.size()).isZero();
+        assertThat(queries.etag()).isNull();
+        assertThat(queries.page(TickQueryService.MIN, TickQueryService.MAX, null, 10)).containsExactly(T);
+        assertThat(queries.latest()).isEqualTo(T);
+        verify(metrics, never()).cacheLookup(anyBoolean());
+    }
+}
@@ -0,0 +1,67 @@
+package leon.task.timeindb.service;
+
+import leon.task.timeindb.repository.SqlDialect;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TickRollupServiceTest {
+
+    @Test // Метки группируются по началу минуты и часа в UTC
+    public void countByBucket_groupsByIntervalStart() {
+        List<Instant> ticks = List.of(
+                Instant.parse("2025-09-15T10:00:59Z"),
+                Instant.parse("2025-09-15T10:00:00Z"),
+                Instant.parse("2025-09-15T10:01:00Z"),
+                Instant.parse("2025-09-15T11:59:59Z"));
+
+        assertThat(TickRollupService.countByBucket(ticks, Granularity.MINUTE)).containsExactly(
+                Map.entry(Instant.parse("2025-09-15T10:00:00Z").getEpochSecond(), 2L),
+                Map.entry(Instant.parse("2025-09-15T10:01:00Z").getEpochSecond(), 1L),
+                Map.entry(Instant.parse("2025-09-15T11:59:00Z").getEpochSecond(), 1L));
+        assertThat(TickRollupService.countByBucket(ticks, Granularity.HOUR)).containsExactly(
+                Map.entry(Instant.parse("2025-09-15T10:00:00Z").getEpochSecond(), 3L),
+                Map.entry(Instant.parse("2025-09-15T11:00:00Z").getEpochSecond(), 1L));
+    }
+
+    @Test // Начало интервала для моментов до 1970 года округляется вниз, а не к нулю
+    public void floor_roundsDownBeforeEpoch() {
+        assertThat(Granularity.MINUTE.floor(-1)).isEqualTo(-60);
+        assertThat(Granularity.DAY.floor(Instant.parse("2025-09-15T23:59:59Z").getEpochSecond()))
+                .isEqualTo(Instant.parse("2025-09-15T00:00:00Z").getEpochSecond());
+        assertThat(Granularity.parse(" Day ")).isEqualTo(Granularity.DAY);
+        assertThat(Granularity.DAY.source()).isEqualTo(Granularity.HOUR);
+    }
+
+    @Test // apply() держит блокировку пересчёта до конца транзакции записи, вне транзакции — только на время запроса
+    public void apply_holdsBackfillLockUntilTransactionCompletes() {
+        TickRollupService rollup = new TickRollupService(mock(JdbcTemplate.class));
+        ReentrantReadWriteLock lock = (ReentrantReadWriteLock) ReflectionTestUtils.getField(rollup, "backfillLock");
+        List<Instant> ticks = List.of(Instant.parse("2025-09-15T10:00:00Z"));
+
+        rollup.apply(SqlDialect.H2, ticks);
+        assertThat(lock.getReadLockCount()).isZero();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            rollup.apply(SqlDialect.H2, ticks);
+            assertThat(lock.getReadLockCount()).isEqualTo(1); // Пересчёт ждёт коммита этой транзакции
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(lock.getReadLockCount()).isZero();
+    }
+}
@@ -1,28 +1,43 @@
 package leon.task.timeindb.service;
 
-import leon.task.timeindb.repository.TimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import leon.task.timeindb.buffer.DequeTickBuffer;
+import leon.task.timeindb.buffer.TickBuffer;
+import leon.task.timeindb.journal.TickJournal;
+import leon.task.timeindb.metrics.TickMetrics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.sql.DataSource;
+import java.sql.Connection;
 import java.time.Instant;
 import java.util.concurrent.LinkedBlockingDeque;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)  // Запускает тест с поддержкой Mockito фреймворк
 public class TimeServiceUnitTest {
 
-    @Mock // Создание мок-объекта для TimeRepository
-    private TimeRepository repo;
+    @Mock // Проверка соединения в тестах доступности БД
+    private DataSource dataSource;
     @Mock // Создание мок-объекта для BatchWriterService
     private BatchWriterService writer;
 
+    private DbCircuitBreaker breaker; // Создаётся вместе с сервисом
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(); // Метрики сервиса, проверяются в тестах
+
     @Test // Тест проверяет поведение при переполнении буфера
     public void generateTick_dropsOldestWhenBufferFull() {
         LinkedBlockingDeque<Instant> smallBuffer = new LinkedBlockingDeque<>(2); // Создание маленького буфера емкостью 2 элемента для тестирования граничных условий
-        TimeService svc = new TimeService(repo, writer, smallBuffer); // Создание экземпляра сервиса с тестовым буфером и моками
+        TimeService svc = service(smallBuffer); // Создание экземпляра сервиса с тестовым буфером и моками
 
         // Генерация трех временных меток (на одну больше, чем емкость буфера)
         svc.generateTick();
@@ -36,7 +51,7 @@ public class TimeServiceUnitTest {
     @Test // Тест проверяет восстановление данных в буфер при ошибке записи
     public void backgroundFlush_movesBatchBackOnError() {
         LinkedBlockingDeque<Instant> smallBuffer = new LinkedBlockingDeque<>(10); // Создание буфера для тестирования
-        TimeService svc = new TimeService(repo, writer, smallBuffer);  // Создание экземпляра сервиса
+        TimeService svc = service(smallBuffer);  // Создание экземпляра сервиса
 
         // Добавление тестовых данных в буфер вручную
         smallBuffer.offer(Instant.parse("2025-09-15T00:00:00Z"));
@@ -51,4 +66,68 @@ public class TimeServiceUnitTest {
         // Проверка, что данные вернулись в буфер после ошибки
         assertThat(smallBuffer.size()).isGreaterThanOrEqualTo(2);
     }
+
+    @Test // Тест проверяет метрики: потерянные метки, размер буфера и флаг БД после ошибки записи
+    public void metrics_reflectDropsBufferAndDbState() {
+        LinkedBlockingDeque<Instant> smallBuffer = new LinkedBlockingDeque<>(1);
+        TimeService svc = service(smallBuffer);
+        doThrow(new RuntimeException("DB down")).when(writer).insertBatch(anyList());
+
+        svc.generateTick();
+        svc.generateTick(); // Вытесняет первую метку
+        svc.backgroundFlush(); // Запись падает - БД помечается недоступной
+
+        assertThat(registry.get("ticks.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("ticks.buffer.size").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("ticks.buffer.remaining").gauge().value()).isZero();
+        assertThat(registry.get("ticks.db.up").gauge().value()).isZero();
+    }
+
+    @Test // Тест проверяет, что внешние метки принимаются без вытеснения и только при достаточном свободном месте
+    public void ingest_acceptsOnlyFreeSpace() {
+        LinkedBlockingDeque<Instant> smallBuffer = new LinkedBlockingDeque<>(4);
+        TimeService svc = service(smallBuffer);
+        svc.generateTick();
+
+        assertThat(svc.acceptsIngest(0.5)).isTrue();
+        assertThat(svc.ingest(new long[]{100, 101, 102, 103}, 4)).isEqualTo(3); // Свободно только три места
+        assertThat(smallBuffer).hasSize(4).contains(Instant.ofEpochSecond(100), Instant.ofEpochSecond(102));
+        assertThat(svc.acceptsIngest(0.25)).isFalse();
+    }
+
+    @Test // Тест проверяет восстановление после сбоя: проверка isValid(), пробные батчи по 100 меток, затем штатная запись
+    public void reconnect_probesThenWritesTrialBatches() throws Exception {
+        LinkedBlockingDeque<Instant> deque = new LinkedBlockingDeque<>(1000);
+        TimeService svc = service(deque);
+        for (int i = 0; i < 500; i++) deque.offer(Instant.ofEpochSecond(1_757_894_400L + i));
+        doThrow(new RuntimeException("DB down")).when(writer).insertBatch(anyList());
+        svc.backgroundFlush();
+        assertThat(breaker.state()).isEqualTo(DbCircuitBreaker.State.OPEN);
+
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        doReturn(BatchResult.EMPTY).when(writer).insertBatch(anyList());
+        ReflectionTestUtils.setField(breaker, "nextProbeAtMs", 0L); // Пауза после сбоя истекла
+        svc.reconnectLoop(); // Проверка прошла и сразу записан первый пробный батч
+        assertThat(breaker.state()).isEqualTo(DbCircuitBreaker.State.HALF_OPEN);
+        assertThat(deque).hasSize(400);
+
+        svc.backgroundFlush();
+        svc.backgroundFlush(); // Третий пробный батч закрывает автомат, остаток пишется штатно
+        assertThat(breaker.state()).isEqualTo(DbCircuitBreaker.State.CLOSED);
+        assertThat(deque).isEmpty();
+        assertThat(registry.get("ticks.db.up").gauge().value()).isEqualTo(1.0);
+        verify(connection).close(); // Проверочное соединение вернулось в пул
+    }
+
+    // Создание сервиса поверх тестовой очереди: журнал отключён, метрики пишутся в память
+    private TimeService service(LinkedBlockingDeque<Instant> deque) {
+        TickBuffer buffer = new DequeTickBuffer(deque);
+        TickJournal journal = TickJournal.disabled();
+        breaker = new DbCircuitBreaker(dataSource);
+        TickMetrics metrics = new TickMetrics(registry, buffer, journal);
+        return new TimeService(breaker, writer, buffer, journal, metrics,
+                new AdaptiveFlushController(), new BacklogReplayService(writer, metrics));
+    }
 }
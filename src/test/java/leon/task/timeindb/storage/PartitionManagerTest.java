@@ -0,0 +1,93 @@
+package leon.task.timeindb.storage;
+
+import leon.task.timeindb.service.WriteMode;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionManagerTest {
+
+    @Test // Имена секций и обратный разбор; чужие имена (секция по умолчанию) не распознаются
+    public void partitionNames_roundTrip() {
+        LocalDate day = LocalDate.of(2025, 9, 15);
+
+        assertThat(PartitionScheme.DAY.partitionName(day)).isEqualTo("time_entity_p20250915");
+        assertThat(PartitionScheme.MONTH.partitionName(PartitionScheme.MONTH.floor(day))).isEqualTo("time_entity_p202509");
+        assertThat(PartitionScheme.DAY.partitionStart("time_entity_p20250915")).isEqualTo(day);
+        assertThat(PartitionScheme.MONTH.partitionStart("time_entity_p202509")).isEqualTo(LocalDate.of(2025, 9, 1));
+        assertThat(PartitionScheme.DAY.partitionStart(PartitionManager.DEFAULT_PARTITION)).isNull();
+        assertThat(PartitionScheme.DAY.partitionStart("time_entity_p202509")).isNull(); // Секция другой схемы
+    }
+
+    @Test // Создаются текущая и ahead следующих секций, которых ещё нет
+    public void missing_createsCurrentAndAhead() {
+        List<LocalDate> days = PartitionManager.missing(PartitionScheme.DAY, LocalDate.of(2025, 12, 31), 2,
+                List.of("time_entity_p20260101"));
+        assertThat(days).containsExactly(LocalDate.of(2025, 12, 31), LocalDate.of(2026, 1, 2));
+
+        List<LocalDate> months = PartitionManager.missing(PartitionScheme.MONTH, LocalDate.of(2025, 12, 31), 1, List.of());
+        assertThat(months).containsExactly(LocalDate.of(2025, 12, 1), LocalDate.of(2026, 1, 1));
+    }
+
+    @Test // Удаляются только секции, целиком лежащие раньше границы срока хранения
+    public void expired_onlyWholePartitionsBeforeCutoff() {
+        List<String> existing = List.of("time_entity_p20250913", PartitionManager.DEFAULT_PARTITION,
+                "time_entity_p20250915", "time_entity_p20250914");
+
+        assertThat(PartitionManager.expired(PartitionScheme.DAY, existing, LocalDate.of(2025, 9, 15)))
+                .containsExactly("time_entity_p20250913", "time_entity_p20250914");
+        assertThat(PartitionManager.expired(PartitionScheme.MONTH, List.of("time_entity_p202508", "time_entity_p202509"),
+                LocalDate.of(2025, 9, 30))).containsExactly("time_entity_p202508");
+    }
+
+    @Test // Граница удалённого: не позже срока хранения и начала самой ранней оставшейся секции
+    public void expiredBefore_stopsAtRemainingPartitions() {
+        List<String> existing = List.of("time_entity_p20250913", PartitionManager.DEFAULT_PARTITION, "time_entity_p20250914");
+
+        assertThat(PartitionManager.expiredBefore(PartitionScheme.DAY, existing, Instant.parse("2025-09-14T12:00:00Z")))
+                .isEqualTo(Instant.parse("2025-09-14T00:00:00Z")); // Секция 14-го ещё хранит утренние метки
+        assertThat(PartitionManager.expiredBefore(PartitionScheme.DAY, existing, Instant.parse("2025-09-13T06:00:00Z")))
+                .isEqualTo(Instant.parse("2025-09-13T00:00:00Z"));
+        assertThat(PartitionManager.expiredBefore(PartitionScheme.DAY, List.of(PartitionManager.DEFAULT_PARTITION),
+                Instant.parse("2025-09-13T06:00:00Z"))).isEqualTo(Instant.parse("2025-09-13T06:00:00Z"));
+    }
+
+    @Test // БД недоступна при старте: схема создаётся повтором через retry-interval, а не через час планового обслуживания
+    public void init_withDatabaseDown_retriesUntilSchemaIsReady() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.execute(ArgumentMatchers.<ConnectionCallback<String>>any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn("PostgreSQL");
+        when(jdbc.queryForObject(contains("relkind"), eq(String.class), any())).thenReturn("p");
+        when(jdbc.queryForObject(contains("information_schema"), eq(Boolean.class), any())).thenReturn(true);
+        when(jdbc.queryForList(anyString(), eq(String.class))).thenReturn(List.of());
+        PartitionManager manager = new PartitionManager(jdbc, mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(manager, "writerMode", WriteMode.JDBC);
+
+        manager.init(); // Ошибка БД не роняет запуск
+        verify(jdbc, times(0)).execute(contains(PartitionManager.DEFAULT_PARTITION));
+
+        manager.retryMaintenance();
+        verify(jdbc).execute(contains(PartitionManager.DEFAULT_PARTITION));
+        manager.retryMaintenance(); // Схема готова — повторять больше нечего
+        verify(jdbc, times(2)).execute(ArgumentMatchers.<ConnectionCallback<String>>any());
+    }
+}
@@ -0,0 +1,46 @@
+package leon.task.timeindb.storage;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UniqueKeyMigrationTest {
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:unique_key;DB_CLOSE_DELAY=-1"));
+
+    @After
+    public void dropTable() {
+        jdbc.execute("DROP TABLE IF EXISTS time_entity");
+    }
+
+    @Test // Схема до источников: старое unique(created_at) удаляется, ключ (source, created_at) остаётся
+    public void migrate_dropsLegacyUniqueCreatedAt() {
+        jdbc.execute("CREATE TABLE time_entity (id bigint auto_increment primary key, source integer default 0 not null,"
+                + " created_at timestamp not null, CONSTRAINT uk_legacy UNIQUE (created_at),"
+                + " CONSTRAINT time_entity_source_created_at_key UNIQUE (source, created_at))");
+
+        new UniqueKeyMigration(jdbc).migrate();
+
+        jdbc.update("INSERT INTO time_entity (source, created_at) VALUES (0, TIMESTAMP '2025-09-15 00:00:00')");
+        jdbc.update("INSERT INTO time_entity (source, created_at) VALUES (7, TIMESTAMP '2025-09-15 00:00:00')");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM time_entity", Integer.class)).isEqualTo(2);
+        assertThat(jdbc.queryForList("SELECT constraint_name FROM information_schema.table_constraints"
+                + " WHERE table_name = 'TIME_ENTITY' AND constraint_type = 'UNIQUE'", String.class))
+                .containsExactly("TIME_ENTITY_SOURCE_CREATED_AT_KEY");
+    }
+
+    @Test // Таблицы ещё нет или ключ уже новый: ничего не удаляется, запуск не прерывается
+    public void migrate_keepsCurrentKeyAndToleratesMissingTable() {
+        new UniqueKeyMigration(jdbc).migrate(); // Таблицы ещё нет
+        jdbc.execute("CREATE TABLE time_entity (id bigint auto_increment primary key, source integer default 0 not null,"
+                + " created_at timestamp not null, CONSTRAINT time_entity_source_created_at_key UNIQUE (source, created_at))");
+
+        new UniqueKeyMigration(jdbc).migrate();
+
+        assertThat(jdbc.queryForList("SELECT constraint_name FROM information_schema.table_constraints"
+                + " WHERE table_name = 'TIME_ENTITY' AND constraint_type = 'UNIQUE'", String.class)).hasSize(1);
+    }
+}